@@ -0,0 +1,26 @@
+package cspSolver;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Usage: java -jar benchmarks.jar [JMH options]
+ *
+ * Runs the benchmarks selected by the JMH options, all of them by default,
+ * with the gc profiler so that the allocation rate of each is reported next
+ * to its throughput.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception
+	{
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
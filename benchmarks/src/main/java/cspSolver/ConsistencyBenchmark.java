@@ -0,0 +1,52 @@
+package cspSolver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cspSolver.BTSolver.ConsistencyCheck;
+import cspSolver.BTSolver.ValueSelectionHeuristic;
+import cspSolver.BTSolver.VariableSelectionHeuristic;
+
+/**
+ * checkConsistency of each ConsistencyCheck, for one decision at the root of
+ * the search, including the assignment and its undo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ConsistencyBenchmark {
+
+	@Param({"9", "16", "25"})
+	public int N;
+
+	@Param
+	public ConsistencyCheck check;
+
+	private SearchState state;
+
+	@Setup
+	public void setup()
+	{
+		state = new SearchState(N, check, VariableSelectionHeuristic.MinimumRemainingValue, ValueSelectionHeuristic.None);
+	}
+
+	@Benchmark
+	public boolean checkConsistency()
+	{
+		return state.tryDecision();
+	}
+}
@@ -0,0 +1,75 @@
+package cspSolver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Domain.remove and Domain.contains, on domains of N values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DomainBenchmark {
+
+	@Param({"9", "16", "25", "100"})
+	public int N;
+
+	private Domain domain;
+	private long[] full;
+	private int value;
+
+	@Setup
+	public void setup()
+	{
+		int[] values = new int[N];
+		for (int v = 1; v <= N; v++)
+		{
+			values[v - 1] = v;
+		}
+		domain = new Domain(values);
+		full = new long[domain.wordCount()];
+		domain.copyBitsTo(full, 0, full.length);
+	}
+
+	/**
+	 * Removes one value from a full domain, a different value each time.
+	 */
+	@Benchmark
+	public boolean remove()
+	{
+		domain.copyBitsFrom(full, 0, full.length);
+		value = value == N ? 1 : value + 1;
+		return domain.remove(value);
+	}
+
+	/**
+	 * Looks up every value and one past the last.
+	 */
+	@Benchmark
+	public int contains()
+	{
+		int found = 0;
+		for (int v = 1; v <= N + 1; v++)
+		{
+			if (domain.contains(v))
+			{
+				found++;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,68 @@
+package cspSolver;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sudoku.Converter;
+import sudoku.SudokuFile;
+
+/**
+ * Building a ConstraintNetwork from a puzzle, and looking up the neighbors of
+ * its variables.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class NetworkBenchmark {
+
+	@Param({"9", "16", "25"})
+	public int N;
+
+	private SudokuFile puzzle;
+	private ConstraintNetwork network;
+	private List<Variable> variables;
+
+	@Setup
+	public void setup()
+	{
+		puzzle = Puzzles.puzzle(N);
+		network = Converter.SudokuFileToConstraintNetwork(puzzle);
+		variables = network.getVariables();
+		network.getNeighborsOfVariable(variables.get(0));
+	}
+
+	@Benchmark
+	public ConstraintNetwork sudokuFileToConstraintNetwork()
+	{
+		return Converter.SudokuFileToConstraintNetwork(puzzle);
+	}
+
+	/**
+	 * Gets the neighbors of every variable once.
+	 */
+	@Benchmark
+	public int getNeighborsOfVariable()
+	{
+		int total = 0;
+		for (Variable v : variables)
+		{
+			total += network.getNeighborsOfVariable(v).size();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,32 @@
+package cspSolver;
+
+import java.util.Random;
+
+import sudoku.SudokuBoardGenerator;
+import sudoku.SudokuFile;
+
+/**
+ * Puzzles the benchmarks run on. They are generated from a fixed seed, so
+ * every run measures the same boards without reading files.
+ */
+final class Puzzles {
+
+	private static final long SEED = 42;
+	private static final double FILL = 0.3;		//share of the cells given
+
+	private Puzzles() {}
+
+	/**
+	 * @param N size of the board, a square: 9, 16, 25...
+	 * @return a solvable N x N puzzle with square blocks
+	 */
+	static SudokuFile puzzle(int N)
+	{
+		int p = (int) Math.round(Math.sqrt(N));
+		if (p * p != N)
+		{
+			throw new IllegalArgumentException("Not a square board size: " + N);
+		}
+		return SudokuBoardGenerator.generateSolvableBoard(N, p, p, (int) (N * N * FILL), new Random(SEED));
+	}
+}
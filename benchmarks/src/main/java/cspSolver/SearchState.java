@@ -0,0 +1,59 @@
+package cspSolver;
+
+import java.util.List;
+
+import cspSolver.BTSolver.ConsistencyCheck;
+import cspSolver.BTSolver.ValueSelectionHeuristic;
+import cspSolver.BTSolver.VariableSelectionHeuristic;
+
+/**
+ * A BTSolver stopped at the root of its search, after the givens have been
+ * propagated, as solve() leaves it before the first decision.
+ */
+final class SearchState {
+
+	final BTSolver solver;
+	final Variable decision;		//the variable the search would branch on first
+	final int value;
+
+	SearchState(int N, ConsistencyCheck cc, VariableSelectionHeuristic vsh, ValueSelectionHeuristic val)
+	{
+		solver = new BTSolver(Puzzles.puzzle(N), Integer.MAX_VALUE);
+		solver.setConsistencyChecks(cc);
+		solver.setVariableSelectionHeuristic(vsh);
+		solver.setValueSelectionHeuristic(val);
+		solver.prepareSearch();
+		List<Variable> variables = solver.getNetwork().getVariables();
+		for (Variable v : variables)
+		{
+			if (v.isAssigned())
+			{
+				solver.getQueue().add(v.getIndex());
+			}
+		}
+		if (!solver.checkConsistency())
+		{
+			throw new IllegalStateException("Puzzle has no solution");
+		}
+		decision = solver.selectNextVariable();
+		value = decision.getDomain().min();
+	}
+
+	/**
+	 * Assigns the first value of the decision variable, runs the consistency
+	 * check and takes it all back, as a node of the search does.
+	 * @return result of the consistency check
+	 */
+	boolean tryDecision()
+	{
+		Trail trail = solver.getTrail();
+		PropagationQueue queue = solver.getQueue();
+		trail.placeBreadCrumb();
+		int mark = queue.mark();
+		decision.assign(value);
+		boolean consistent = solver.checkConsistency();
+		trail.undo();
+		queue.undo(mark);
+		return consistent;
+	}
+}
@@ -0,0 +1,59 @@
+package cspSolver;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sudoku.Converter;
+
+/**
+ * Trail.push and Trail.undo: records the domain of every variable of an N x N
+ * puzzle under one breadcrumb, then restores them all.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TrailBenchmark {
+
+	@Param({"9", "16", "25"})
+	public int N;
+
+	private Trail trail;
+	private Variable[] variables;
+
+	@Setup
+	public void setup()
+	{
+		ConstraintNetwork network = Converter.SudokuFileToConstraintNetwork(Puzzles.puzzle(N));
+		List<Variable> list = network.getVariables();
+		trail = new Trail(list);
+		variables = list.toArray(new Variable[list.size()]);
+	}
+
+	@Benchmark
+	public int pushUndo()
+	{
+		trail.placeBreadCrumb();
+		for (Variable v : variables)
+		{
+			trail.push(v);
+		}
+		int size = trail.size();
+		trail.undo();
+		return size;
+	}
+}
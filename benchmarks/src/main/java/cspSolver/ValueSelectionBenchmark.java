@@ -0,0 +1,56 @@
+package cspSolver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cspSolver.BTSolver.ConsistencyCheck;
+import cspSolver.BTSolver.ValueSelectionHeuristic;
+import cspSolver.BTSolver.VariableSelectionHeuristic;
+
+/**
+ * getNextValues of each ValueSelectionHeuristic, for the variable the search
+ * branches on first.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ValueSelectionBenchmark {
+
+	@Param({"9", "16", "25"})
+	public int N;
+
+	@Param
+	public ValueSelectionHeuristic heuristic;
+
+	private SearchState state;
+	private int[] values;
+
+	@Setup
+	public void setup()
+	{
+		state = new SearchState(N, ConsistencyCheck.ArcConsistency, VariableSelectionHeuristic.MinimumRemainingValue, heuristic);
+		values = new int[state.decision.size()];
+	}
+
+	@Benchmark
+	public void getNextValues(Blackhole bh)
+	{
+		bh.consume(state.solver.getNextValues(state.decision, values));
+		bh.consume(values);
+	}
+}
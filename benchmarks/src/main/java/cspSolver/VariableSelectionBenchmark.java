@@ -0,0 +1,52 @@
+package cspSolver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cspSolver.BTSolver.ConsistencyCheck;
+import cspSolver.BTSolver.ValueSelectionHeuristic;
+import cspSolver.BTSolver.VariableSelectionHeuristic;
+
+/**
+ * selectNextVariable of each VariableSelectionHeuristic, at the root of the
+ * search.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class VariableSelectionBenchmark {
+
+	@Param({"9", "16", "25"})
+	public int N;
+
+	@Param
+	public VariableSelectionHeuristic heuristic;
+
+	private SearchState state;
+
+	@Setup
+	public void setup()
+	{
+		state = new SearchState(N, ConsistencyCheck.ArcConsistency, heuristic, ValueSelectionHeuristic.None);
+	}
+
+	@Benchmark
+	public Variable selectNextVariable()
+	{
+		return state.solver.selectNextVariable();
+	}
+}
@@ -1,10 +1,18 @@
 package cspSolver;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import sudoku.Converter;
 import sudoku.SudokuFile;
@@ -12,14 +20,42 @@ import sudoku.SudokuFile;
  * Backtracking solver. 
  *
  */
-public class BTSolver implements Runnable{
+public class BTSolver implements Solver{
 
 	//===============================================================================
 	// Properties
 	//===============================================================================
 
 	private ConstraintNetwork network;
-	private static Trail trail = Trail.getTrail();
+	private Trail trail;
+	private PropagationQueue queue;
+	private VariableSelectionIndex selectionIndex;
+	
+	//scratch space for value ordering
+	private int[][] valueBuffers = new int[0][];
+	
+	//decision stack of the search, one entry per level
+	private Variable[] decisions;		//variable assigned at the level
+	private int[] cursors;				//position of the next value to try in the level's value buffer
+	private int[] valueCounts;			//number of values to try at the level
+	private int[] queueMarks;			//mark of the propagation queue before the current value
+	private int[] conflictMarks;		//mark of the conflict sets before the current value
+	private int[] lcvScores = new int[0];
+	private long[] lcvKeys = new long[0];
+	private int[] lcvValues = new int[0];
+	
+	private final DomainListener domainEvents = new DomainListener() {
+		
+		@Override
+		public void domainChanged(Variable v, int oldSize) {
+			queue.domainChanged(v, oldSize);
+			selectionIndex.domainChanged(v, oldSize);
+			if (conflicts != null)
+			{
+				conflicts.domainChanged(v, oldSize);
+			}
+		}
+	};
 	private boolean hasSolution = false;
 	private SudokuFile sudokuGrid;
 	private String status = "error";
@@ -31,16 +67,43 @@ public class BTSolver implements Runnable{
 	private long endTime;
 	private long acPreStartTime;
 	private long acPreEndTime;
+	private final AtomicBoolean stopped;	//set as soon as the search has to stop, read at every node
+	private final AtomicReference<StopReason> stopReason;	//the first reason to stop wins
+	private SolutionCounter solutions;
+	private SolutionListener solutionListener;
+	private final AtomicLong listenerNanos;	//time spent in the solution listener by all the tasks, not counted in the time limit
+	
+	private long timeLimitEnd;			//System.nanoTime() at which the time limit is reached
+	private long deadline = Long.MAX_VALUE;
+	private long nodeLimit;				//0 for no limit
+	private CancellationToken cancellationToken;
+	private int checkCountdown;			//nodes left before the clock is read again
+	private final AtomicLong nodeCount;	//assignments of all the tasks, counted under a node limit
+	
+	private static final int CHECK_INTERVAL = 1024;		//nodes between two readings of the clock
+	private static ScheduledThreadPoolExecutor alarms;	//stops solvers at their deadline and time limit, shared by all of them
+	private Random random;				//shuffles the values before ordering, null to keep them sorted
+	private int parallelism = 1;
+	private int splitDepth;
+	private boolean backjumping;
+	private int maxNogoodSize;
+	private ConflictSets conflicts;		//null without backjumping
+	private Nogoods nogoods;			//null without nogood learning
+	private int[] nogoodVariables = new int[0];
+	private int[] nogoodValues = new int[0];
 	
 	public enum VariableSelectionHeuristic 	{ None, MinimumRemainingValue, Degree, MRVDH };
 	public enum ValueSelectionHeuristic 		{ None, LeastConstrainingValue };
-	public enum ConsistencyCheck				{ None, ForwardChecking, ArcConsistency };
+	public enum ConsistencyCheck				{ None, ForwardChecking, IncrementalForwardChecking, ArcConsistency };
 	public enum Preprocessing				{ None, ACPreprocessing };
+	public enum StopReason					{ None, Completed, SolutionLimit, TimeLimit, Deadline, NodeLimit, Cancelled, Interrupted };
 	
 	private VariableSelectionHeuristic varHeuristics;
 	private ValueSelectionHeuristic valHeuristics;
 	private ConsistencyCheck cChecks;
 	private Preprocessing Preprocess;
+	private List<Propagator> propagators = new ArrayList<Propagator>();
+	private SudokuUnits units;
 	//===============================================================================
 	// Constructors
 	//===============================================================================
@@ -48,8 +111,14 @@ public class BTSolver implements Runnable{
 	public BTSolver(SudokuFile sf, int timelimit)
 	{
 		this.network = Converter.SudokuFileToConstraintNetwork(sf);
+		this.trail = new Trail(network.getVariables());
 		this.sudokuGrid = sf;
 		this.timelimit = timelimit;
+		this.stopped = new AtomicBoolean();
+		this.stopReason = new AtomicReference<StopReason>(StopReason.None);
+		this.nodeCount = new AtomicLong();
+		this.listenerNanos = new AtomicLong();
+		this.solutions = new SolutionCounter(1);
 		numAssignments = 0;
 		numBacktracks = 0;
 		Preprocess = Preprocessing.None;
@@ -57,6 +126,52 @@ public class BTSolver implements Runnable{
 		valHeuristics = ValueSelectionHeuristic.None;
 		varHeuristics = VariableSelectionHeuristic.None;
 	}
+	
+	/**
+	 * Creates the solver of a subtree of a parallel search. It starts from a copy 
+	 * of the current domains of <tt>parent</tt> and of its propagation queue, 
+	 * which still holds the givens when splitting at the root. It has its own 
+	 * Trail, and shares the parent's settings, start time and stop flag. 
+	 */
+	private BTSolver(BTSolver parent)
+	{
+		this.network = Converter.SudokuFileToConstraintNetwork(parent.sudokuGrid);
+		List<Variable> variables = network.getVariables();
+		List<Variable> parentVariables = parent.network.getVariables();
+		for (int i = 0; i < variables.size(); i++)
+		{
+			variables.get(i).setDomain(new Domain(parentVariables.get(i).getDomain()));
+		}
+		this.trail = new Trail(variables);
+		this.sudokuGrid = parent.sudokuGrid;
+		this.timelimit = parent.timelimit;
+		this.stopped = parent.stopped;
+		this.stopReason = parent.stopReason;
+		this.nodeCount = parent.nodeCount;
+		this.listenerNanos = parent.listenerNanos;
+		this.solutions = parent.solutions;
+		this.solutionListener = parent.solutionListener;
+		this.timeLimitEnd = parent.timeLimitEnd;
+		this.deadline = parent.deadline;
+		this.nodeLimit = parent.nodeLimit;
+		this.acPreStartTime = parent.acPreStartTime;
+		this.acPreEndTime = parent.acPreEndTime;
+		this.startTime = parent.startTime;
+		this.Preprocess = parent.Preprocess;
+		this.cChecks = parent.cChecks;
+		this.valHeuristics = parent.valHeuristics;
+		this.varHeuristics = parent.varHeuristics;
+		this.propagators = parent.propagators;
+		this.random = parent.random == null ? null : new Random(parent.random.nextLong());
+		this.parallelism = parent.parallelism;
+		this.splitDepth = parent.splitDepth;
+		prepareSearch();
+		queue.addAll(parent.queue);
+		if (parent.units != null)
+		{
+			units = new SudokuUnits(network);
+		}
+	}
 
 	//===============================================================================
 	// Modifiers
@@ -81,6 +196,124 @@ public class BTSolver implements Runnable{
 	{
 		this.Preprocess = cc;
 	}
+	
+	/**
+	 * Shuffles the values of each variable before the value selection heuristic 
+	 * orders them, so that values the heuristic ranks equally are tried in a 
+	 * random order. Without a seed they are tried lowest to highest. 
+	 * @param seed seed of the random order
+	 */
+	public void setRandomSeed(long seed)
+	{
+		this.random = new Random(seed);
+	}
+	
+	/**
+	 * Searches the subtrees below the first <tt>splitDepth</tt> levels in parallel 
+	 * on a ForkJoinPool. Each value of a variable selected above that depth 
+	 * becomes a task, with its own copy of the domains and its own Trail. Idle 
+	 * workers steal tasks from busy ones. The first task to find a solution 
+	 * stops all the others. 
+	 * @param parallelism number of worker threads, 1 for a sequential search
+	 * @param splitDepth number of levels whose values become tasks
+	 */
+	public void setParallelSearch(int parallelism, int splitDepth)
+	{
+		this.parallelism = parallelism;
+		this.splitDepth = splitDepth;
+	}
+	
+	/**
+	 * Jumps back over the decisions that played no part in a failure, instead of 
+	 * undoing the last one only: the search keeps the levels whose decisions 
+	 * explain each value removed, and once a variable runs out of values it goes 
+	 * back to the latest decision among the causes of its failures. Values 
+	 * removed by the deduction rules are blamed on every decision made so far. 
+	 * 
+	 * With nogoods, the sets of at most <tt>maxNogoodSize</tt> decisions found to 
+	 * fail are learned, and checked whenever one of their variables is assigned: 
+	 * once all of a nogood's assignments but one hold, the value of the last one 
+	 * is removed. Nogoods are checked by forward checking and arc consistency. 
+	 * 
+	 * Only a sequential search backjumps, the tasks of a parallel search undo 
+	 * one decision at a time. 
+	 * @param backjumping true to backjump
+	 * @param maxNogoodSize largest number of decisions in a nogood learned, 0 to learn none
+	 */
+	public void setBackjumping(boolean backjumping, int maxNogoodSize)
+	{
+		this.backjumping = backjumping;
+		this.maxNogoodSize = maxNogoodSize;
+	}
+	
+	/**
+	 * Keeps searching after a solution, until <tt>limit</tt> solutions have been 
+	 * found or the whole tree has been searched. The first solution is the one 
+	 * returned by getSolution. A limit of 2 checks that a puzzle has a unique 
+	 * solution. The default limit, 1, stops at the first solution. 
+	 * @param limit number of solutions to stop at, 0 to count all of them
+	 */
+	public void setSolutionLimit(int limit)
+	{
+		this.solutions = new SolutionCounter(limit);
+	}
+	
+	/**
+	 * Hands every solution counted to <tt>listener</tt> while the search runs, 
+	 * so solutions can be used without being kept. Combine with 
+	 * setSolutionLimit to receive more than the first one. Time spent in the 
+	 * listener is not counted in the time limit. 
+	 * @param listener receives the solutions, null for none
+	 */
+	public void setSolutionListener(SolutionListener listener)
+	{
+		this.solutionListener = listener;
+	}
+	
+	/**
+	 * Stops the search at <tt>deadline</tt>, on top of the time limit. Unlike the 
+	 * time limit, the deadline counts all the time until then, preprocessing and 
+	 * solution listener included. A scheduler thread shared by all solvers stops 
+	 * the search when it passes, so the clock is not read at every node. 
+	 * @param deadline value of System.nanoTime() to stop at
+	 */
+	public void setDeadline(long deadline)
+	{
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Stops the search once it has made <tt>maxNodes</tt> assignments, counted 
+	 * over all the tasks of a parallel search. 
+	 * @param maxNodes number of assignments allowed, 0 for no limit
+	 */
+	public void setNodeLimit(long maxNodes)
+	{
+		this.nodeLimit = maxNodes;
+	}
+	
+	/**
+	 * @param token token cancelling this solver while it solves, null for none
+	 */
+	public void setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+	}
+	
+	public void cancel()
+	{
+		stop(StopReason.Cancelled);
+	}
+	
+	/**
+	 * Adds a deduction rule, run after the consistency check at every node 
+	 * and before search starts. Rules run in the order they were added. 
+	 * @param p the rule to add
+	 */
+	public void addPropagator(Propagator p)
+	{
+		this.propagators.add(p);
+	}
 	//===============================================================================
 	// Accessors
 	//===============================================================================
@@ -146,16 +379,81 @@ public class BTSolver implements Runnable{
 	{
 		return numBacktracks;
 	}
+	
+	/**
+	 * @return number of nogoods learned by backjumping
+	 */
+	public int getNumNogoods()
+	{
+		return nogoods == null ? 0 : nogoods.size();
+	}
 
 	public ConstraintNetwork getNetwork()
 	{
 		return network;
 	}
 	
+	/**
+	 * Used by the benchmarks to undo the changes they make between runs. 
+	 */
+	Trail getTrail()
+	{
+		return trail;
+	}
+	
+	PropagationQueue getQueue()
+	{
+		return queue;
+	}
+	
 	public String getStatus()
 	{
 		return status;
 	}
+	
+	/**
+	 * @return why the search stopped: Completed if it searched the whole tree, 
+	 * None while it runs
+	 */
+	public StopReason getStopReason()
+	{
+		return stopReason.get();
+	}
+	
+	/**
+	 * @return number of solutions found, at most the solution limit
+	 */
+	public int getNumSolutions()
+	{
+		return solutions.getCount();
+	}
+	
+	/**
+	 * @param k a solution, from 1 to 1024, or getNumSolutions() for the last one
+	 * @return time from the start of the search to the k-th solution, in milliseconds
+	 */
+	public long getSolutionTime(int k)
+	{
+		return solutions.getTime(k) - startTime;
+	}
+	
+	/**
+	 * @return true if getNumSolutions() is exact: the search reached the solution 
+	 * limit or searched the whole tree, and did not time out or get cancelled
+	 */
+	public boolean isCountComplete()
+	{
+		return solutions.isLimitReached() || stopReason.get() == StopReason.Completed;
+	}
+	
+	/**
+	 * @return true if the puzzle was found to have exactly one solution. Needs a 
+	 * solution limit of at least 2. 
+	 */
+	public boolean isUnique()
+	{
+		return getNumSolutions() == 1 && isCountComplete();
+	}
 
 	//===============================================================================
 	// Helper Methods
@@ -165,7 +463,7 @@ public class BTSolver implements Runnable{
 	 * Checks whether the changes from the last time this method was called are consistent. 
 	 * @return true if consistent, false otherwise
 	 */
-	private boolean checkConsistency()
+	boolean checkConsistency()
 	{
 		boolean isConsistent = false;
 		switch(cChecks)
@@ -174,6 +472,8 @@ public class BTSolver implements Runnable{
 		break;
 		case ForwardChecking: 	isConsistent = forwardChecking();
 		break;
+		case IncrementalForwardChecking: isConsistent = incrementalForwardChecking();
+		break;
 		case ArcConsistency: 	isConsistent = arcConsistency();
 		break;
 		default: 				isConsistent = assignmentsCheck();
@@ -182,6 +482,51 @@ public class BTSolver implements Runnable{
 		return isConsistent;
 	}
 	
+	/**
+	 * Runs the consistency check and the propagators in turn until none of them 
+	 * changes a domain. 
+	 * @return true if consistent, false if a contradiction was found
+	 */
+	private boolean propagate()
+	{
+		if (!checkConsistency())
+		{
+			return false;
+		}
+		if (propagators.isEmpty())
+		{
+			return true;
+		}
+		
+		boolean changed = true;
+		while (changed)
+		{
+			changed = false;
+			for (Propagator p : propagators)
+			{
+				long numChanges = units.getNumChanges();
+				units.refresh();
+				if (!p.propagate(units))
+				{
+					if (conflicts != null)
+					{
+						conflicts.failAll();
+					}
+					return false;
+				}
+				if (units.getNumChanges() != numChanges)
+				{
+					changed = true;
+					if (!checkConsistency())
+					{
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * default consistency check. Ensures no two variables are assigned to the same value.
 	 * @return true if consistent, false otherwise. 
@@ -196,7 +541,7 @@ public class BTSolver implements Runnable{
 				{
 					if (v.getAssignment() == vOther.getAssignment())
 					{
-						return false;
+						return conflict(v, vOther);
 					}
 				}
 			}
@@ -210,41 +555,165 @@ public class BTSolver implements Runnable{
 		{
 			if(v.isAssigned())
 			{
+				causeOfRemovals(v.getIndex());
 				for(Variable vOther : network.getNeighborsOfVariable(v))
 				{
 					if (!vOther.isAssigned())
 						vOther.removeValueFromDomain(v.getAssignment());
 					if (v.getAssignment() == vOther.getAssignment())
-						return false;
+						return conflict(v, vOther);
+				}
+				causeOfRemovals(ConflictSets.UNKNOWN);
+				if (nogoods != null && !checkNogoods(v))
+				{
+					return false;
 				}
 			}
 		}
 		return true;
 	}
 
+	/**
+	 * Same pruning as forwardChecking, but only looks at variables assigned since 
+	 * the last call: the variable just assigned and the singletons created by 
+	 * earlier propagation. Variables are processed in the same order as the full
+	 * scan of forwardChecking, including leaving a singleton created behind the 
+	 * scan position for the next call, so both produce the same search tree.
+	 * @return true if consistent, false otherwise
+	 */
+	private boolean incrementalForwardChecking()
+	{
+		List<Variable> variables = network.getVariables();
+		for (int i = queue.pollFrom(0); i >= 0; i = queue.pollFrom(i + 1))
+		{
+			Variable v = variables.get(i);
+			if (v.isAssigned() && !propagateAssignment(v))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Propagates assignments until no assigned variable is left in the queue. 
+	 * Only variables whose domain became a single value since the last fixpoint
+	 * are queued, so the work done is proportional to what changed. 
+	 * @return true if consistent, false otherwise
+	 */
 	private boolean arcConsistency()
 	{
-		for(Variable v : network.getVariables())
+		List<Variable> variables = network.getVariables();
+		for (int i = queue.poll(); i >= 0; i = queue.poll())
 		{
-			if(v.isAssigned())
+			Variable v = variables.get(i);
+			if (v.isAssigned() && !propagateAssignment(v))
 			{
-				Queue<Variable> acq = new LinkedList<Variable>();
-				acq.add(v);
-				
-				while (!acq.isEmpty())
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes the value of an assigned variable from its unassigned neighbors. 
+	 * Neighbors reduced to a single value are queued by their domain events. 
+	 * @param v an assigned variable
+	 * @return false if a neighbor is assigned the same value, true otherwise
+	 */
+	private boolean propagateAssignment(Variable v)
+	{
+		int value = v.getAssignment();
+		causeOfRemovals(v.getIndex());
+		for (Variable vOther : network.getNeighborsOfVariable(v))
+		{
+			if (!vOther.isAssigned())
+				vOther.removeValueFromDomain(value);
+			if (value == vOther.getAssignment())
+				return conflict(v, vOther);
+		}
+		causeOfRemovals(ConflictSets.UNKNOWN);
+		return nogoods == null || checkNogoods(v);
+	}
+	
+	/**
+	 * Tells the conflict sets, if any, which assignment the values removed from 
+	 * now on are removed for. 
+	 * @param cause index of the variable, or ConflictSets.UNKNOWN
+	 */
+	private void causeOfRemovals(int cause)
+	{
+		if (conflicts != null)
+		{
+			conflicts.setCause(cause);
+		}
+	}
+	
+	/**
+	 * Records a failure found between two neighbors assigned the same value, 
+	 * explained by the reasons of their domains. 
+	 * @return false
+	 */
+	private boolean conflict(Variable v, Variable vOther)
+	{
+		if (conflicts != null)
+		{
+			conflicts.setCause(ConflictSets.UNKNOWN);
+			conflicts.fail(v.getIndex(), vOther.getIndex());
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks the nogoods of an assigned variable. A nogood whose assignments all 
+	 * hold is a failure; if all but one hold, the value of the last one is 
+	 * removed, for the reasons of the others. 
+	 * @return false if a nogood holds, true otherwise
+	 */
+	private boolean checkNogoods(Variable v)
+	{
+		List<Variable> variables = network.getVariables();
+		int[] watches = nogoods.getWatches(v.getIndex(), v.getAssignment());
+		for (int w = 0; w < nogoods.getNumWatches(v.getIndex(), v.getAssignment()); w++)
+		{
+			int[] vars = nogoods.getVariables(watches[w]);
+			int[] vals = nogoods.getValues(watches[w]);
+			int open = -1;
+			int k = 0;
+			for (; k < vars.length; k++)
+			{
+				Domain d = variables.get(vars[k]).getDomain();
+				if (!d.contains(vals[k]) || (d.size() > 1 && open >= 0))
 				{
-					Variable n = acq.remove();
-					for(Variable vOther : network.getNeighborsOfVariable(n))
-					{
-						if (!vOther.isAssigned())
-						{
-							vOther.removeValueFromDomain(n.getAssignment());
-							if (vOther.isAssigned() && !acq.contains(vOther))
-								acq.add(vOther);
-						}
-						if (n.getAssignment() == vOther.getAssignment())
-							return false;
-					}
+					break;
+				}
+				if (d.size() > 1)
+				{
+					open = k;
+				}
+			}
+			if (k < vars.length)
+			{
+				//an assignment cannot hold any more, or two are still open
+				continue;
+			}
+			if (open < 0)
+			{
+				conflicts.clearFailureOfNogood();
+				for (int var : vars)
+				{
+					conflicts.addToFailure(var);
+				}
+				return false;
+			}
+			conflicts.setCause(ConflictSets.EXPLICIT);
+			variables.get(vars[open]).removeValueFromDomain(vals[open]);
+			conflicts.setCause(ConflictSets.UNKNOWN);
+			for (int var : vars)
+			{
+				if (var != vars[open])
+				{
+					conflicts.addReason(vars[open], var);
 				}
 			}
 		}
@@ -255,7 +724,7 @@ public class BTSolver implements Runnable{
 	 * Selects the next variable to check.
 	 * @return next variable to check. null if there are no more variables to check. 
 	 */
-	private Variable selectNextVariable()
+	Variable selectNextVariable()
 	{
 		Variable next = null;
 		switch(varHeuristics)
@@ -264,7 +733,7 @@ public class BTSolver implements Runnable{
 		break;
 		case MinimumRemainingValue: next = getMRV();
 		break;
-		case Degree:				next = getDegree(network.getVariables());
+		case Degree:				next = getDegree();
 		break;
 		case MRVDH:					next = getMRVDH();
 		break;
@@ -290,79 +759,29 @@ public class BTSolver implements Runnable{
 		return null;
 	}
 
+	/**
+	 * @return unassigned variable with the fewest values left, ties broken by lowest index
+	 */
 	private Variable getMRV()
 	{
-		Variable leastRemaining = null;
-		for(Variable v : network.getVariables())
-		{
-			if(!v.isAssigned())
-			{
-				if (leastRemaining == null || v.size() < leastRemaining.size())
-				{
-					leastRemaining = v;
-				}
-			}
-		}
-		return leastRemaining;
+		return selectionIndex.getMRV();
 	}
 	
-	private Variable getDegree(List<Variable> values)
+	/**
+	 * @return unassigned variable with the most unassigned neighbors, ties broken by lowest index
+	 */
+	private Variable getDegree()
 	{
-		Variable degreeheuristic = null;
-		int max_neighbors_unassigned = 0;
-		for(Variable v : values)
-		{
-			if(!v.isAssigned())
-			{
-				if (degreeheuristic == null)
-					degreeheuristic = v;
-				
-				int neighbors_unassigned = 0;
-				for(Variable vOther : network.getNeighborsOfVariable(v))
-				{
-					if(!vOther.isAssigned())
-					{
-						neighbors_unassigned++;
-					}
-				}
-				if (neighbors_unassigned > max_neighbors_unassigned)
-				{
-					max_neighbors_unassigned = neighbors_unassigned;
-					degreeheuristic = v;
-				}
-			}
-		}
-		return degreeheuristic;
+		return selectionIndex.getDegree();
 	}
 	
+	/**
+	 * @return among the unassigned variables with the fewest values left, the one with 
+	 * the most unassigned neighbors
+	 */
 	private Variable getMRVDH()
 	{
-		List<Variable> leastRemaining = new ArrayList<Variable>();
-		int minimum = -1;
-		for(Variable v : network.getVariables())
-		{
-			if(!v.isAssigned())
-			{
-				if (minimum == -1 || v.size() < minimum)
-				{
-					minimum = v.size();
-					leastRemaining.clear();
-					leastRemaining.add(v);
-				}
-				else if (v.size() == minimum)
-				{
-					leastRemaining.add(v);
-				}
-			}
-		}
-		
-		if (leastRemaining.isEmpty())
-			return null;
-		
-		if (leastRemaining.size() == 1)
-			return leastRemaining.get(0);
-		
-		return getDegree(leastRemaining);
+		return selectionIndex.getMRVDH();
 	}
 	
 	/**
@@ -372,17 +791,29 @@ public class BTSolver implements Runnable{
 	 */
 	public List<Integer> getNextValues(Variable v)
 	{
-		List<Integer> orderedValues;
+		int[] values = new int[v.size()];
+		return toList(values, getNextValues(v, values));
+	}
+	
+	/**
+	 * Same as getNextValues(Variable), but writes the values into an array 
+	 * instead of allocating a list. 
+	 * @param values array of at least v.size() elements to write the values to
+	 * @return number of values written
+	 */
+	int getNextValues(Variable v, int[] values)
+	{
+		int numValues;
 		switch(valHeuristics)
 		{
-		case None: 						orderedValues = getValuesInOrder(v);
+		case None: 						numValues = shuffleValues(values, getValuesInOrder(v, values));
 		break;
-		case LeastConstrainingValue: 	orderedValues = getValuesLCVOrder(v);
+		case LeastConstrainingValue: 	numValues = getValuesLCVOrder(v, values);
 		break;
-		default:						orderedValues = getValuesInOrder(v);
+		default:						numValues = shuffleValues(values, getValuesInOrder(v, values));
 		break;
 		}
-		return orderedValues;
+		return numValues;
 	}
 	
 	/**
@@ -392,60 +823,224 @@ public class BTSolver implements Runnable{
 	 */
 	public List<Integer> getValuesInOrder(Variable v)
 	{
-		List<Integer> values = v.getDomain().getValues();
-		
-		Comparator<Integer> valueComparator = new Comparator<Integer>(){
-
-			@Override
-			public int compare(Integer i1, Integer i2) {
-				return i1.compareTo(i2);
-			}
-		};
-		Collections.sort(values, valueComparator);
-		return values;
+		int[] values = new int[v.size()];
+		return toList(values, getValuesInOrder(v, values));
 	}
 	
-	public List<Integer> getValuesLCVOrder(final Variable v)
-	{
-		List<Integer> values = v.getDomain().getValues();
-		
-		Comparator<Integer> valueComparator = new Comparator<Integer>(){
-			
-			@Override
-			public int compare(Integer x, Integer y) {
-				Integer xcount = 0, ycount = 0;
-				
-				for(Variable vOther : network.getNeighborsOfVariable(v)) {
-					if(!vOther.isAssigned()) {
-						for(int each : vOther.Values())
-						{
-							if(each == x)
-								xcount++;
-							if(each == y)
-								ycount++;
-						}
-					}
-				}
-				
-				return xcount.compareTo(ycount);
-			}
-		};
-		Collections.sort(values, valueComparator);
-		return values;
-	}
 	/**
-	 * Called when solver finds a solution
+	 * Least constraining value ordering. 
+	 * @param v Variable whose values need to be ordered
+	 * @return values ordered by the number of unassigned neighbors that could 
+	 * also take them, lowest first. Ties are ordered by lowest to highest. 
+	 */
+	public List<Integer> getValuesLCVOrder(Variable v)
+	{
+		int[] values = new int[v.size()];
+		return toList(values, getValuesLCVOrder(v, values));
+	}
+	
+	private int getValuesInOrder(Variable v, int[] values)
+	{
+		Domain domain = v.getDomain();
+		int numValues = 0;
+		for (int value = domain.min(); value != 0; value = domain.nextValue(value))
+		{
+			values[numValues++] = value;
+		}
+		return numValues;
+	}
+	
+	/**
+	 * Scores every value once, by going through the neighbors a single time, 
+	 * then sorts the values on (score, position) packed into a long. Without 
+	 * a seed the position order is the value order. 
+	 */
+	private int getValuesLCVOrder(Variable v, int[] values)
+	{
+		int numValues = shuffleValues(values, getValuesInOrder(v, values));
+		if (numValues < 2)
+		{
+			return numValues;
+		}
+		
+		int maxValue = 0;
+		for (int k = 0; k < numValues; k++)
+		{
+			maxValue = Math.max(maxValue, values[k]);
+		}
+		if (lcvScores.length <= maxValue)
+		{
+			lcvScores = new int[maxValue + 1];
+		}
+		if (lcvKeys.length < numValues)
+		{
+			lcvKeys = new long[numValues];
+			lcvValues = new int[numValues];
+		}
+		for (int k = 0; k < numValues; k++)
+		{
+			lcvScores[values[k]] = 0;
+		}
+		
+		for (Variable vOther : network.getNeighborsOfVariable(v))
+		{
+			if (!vOther.isAssigned())
+			{
+				Domain other = vOther.getDomain();
+				for (int k = 0; k < numValues; k++)
+				{
+					if (other.contains(values[k]))
+					{
+						lcvScores[values[k]]++;
+					}
+				}
+			}
+		}
+		
+		for (int k = 0; k < numValues; k++)
+		{
+			lcvKeys[k] = ((long) lcvScores[values[k]] << 32) | k;
+			lcvValues[k] = values[k];
+		}
+		Arrays.sort(lcvKeys, 0, numValues);
+		for (int k = 0; k < numValues; k++)
+		{
+			values[k] = lcvValues[(int) lcvKeys[k]];
+		}
+		return numValues;
+	}
+	
+	/**
+	 * Shuffles the values if a random seed was set. 
+	 * @return numValues
+	 */
+	private int shuffleValues(int[] values, int numValues)
+	{
+		if (random != null)
+		{
+			for (int k = numValues - 1; k > 0; k--)
+			{
+				int other = random.nextInt(k + 1);
+				int value = values[k];
+				values[k] = values[other];
+				values[other] = value;
+			}
+		}
+		return numValues;
+	}
+	
+	private static List<Integer> toList(int[] values, int numValues)
+	{
+		List<Integer> list = new ArrayList<Integer>(numValues);
+		for (int k = 0; k < numValues; k++)
+		{
+			list.add(values[k]);
+		}
+		return list;
+	}
+	
+	/**
+	 * @return array to hold the values tried at <tt>level</tt> of the search, reused 
+	 * every time the search gets back to that level
+	 */
+	private int[] valueBuffer(int level, int size)
+	{
+		if (level >= valueBuffers.length)
+		{
+			valueBuffers = Arrays.copyOf(valueBuffers, Math.max(level + 1, valueBuffers.length * 2));
+		}
+		if (valueBuffers[level] == null || valueBuffers[level].length < size)
+		{
+			valueBuffers[level] = new int[size];
+		}
+		return valueBuffers[level];
+	}
+	
+	/**
+	 * Called when solver finds a solution
 	 */
 	private void success()
 	{
+		if (solutions.add(System.currentTimeMillis()) == 0)
+		{
+			return;
+		}
+		if (solutions.isLimitReached())
+		{
+			stop(StopReason.SolutionLimit);
+		}
+		if (solutionListener != null)
+		{
+			long start = System.nanoTime();
+			solutionListener.solutionFound(Converter.ConstraintNetworkToSudokuFile(network, sudokuGrid.getN(), sudokuGrid.getP(), sudokuGrid.getQ()));
+			listenerNanos.addAndGet(System.nanoTime() - start);
+		}
+		if (hasSolution)
+		{
+			return;
+		}
 		hasSolution = true;
 		sudokuGrid = Converter.ConstraintNetworkToSudokuFile(network, sudokuGrid.getN(), sudokuGrid.getP(), sudokuGrid.getQ());
 		status = "success";
 	}
 	
-	private boolean exceedTimeLimit()
+	/**
+	 * Records why the search stops, unless it is already stopping, and stops it. 
+	 */
+	private void stop(StopReason reason)
+	{
+		stopReason.compareAndSet(StopReason.None, reason);
+		stopped.set(true);
+	}
+	
+	/**
+	 * Reads the interrupt flag and the clock once every CHECK_INTERVAL nodes. 
+	 * The deadline and the time limit are enforced by alarms, this is a backstop 
+	 * in case an alarm runs late. 
+	 * @return false if the search has to stop
+	 */
+	private boolean withinLimits()
 	{
-		return timelimit <= ((acPreEndTime-acPreStartTime) + (System.currentTimeMillis()-startTime))/1000;
+		if (--checkCountdown > 0)
+		{
+			return true;
+		}
+		checkCountdown = CHECK_INTERVAL;
+		if (Thread.currentThread().isInterrupted())
+		{
+			stop(StopReason.Interrupted);
+			return false;
+		}
+		long now = System.nanoTime();
+		if (now - deadline >= 0)
+		{
+			stop(StopReason.Deadline);
+			return false;
+		}
+		if (now - listenerNanos.get() - timeLimitEnd >= 0)
+		{
+			stop(StopReason.TimeLimit);
+			return false;
+		}
+		return true;
+	}
+	
+	private static synchronized ScheduledThreadPoolExecutor alarms()
+	{
+		if (alarms == null)
+		{
+			alarms = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "solver-deadlines");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			alarms.setRemoveOnCancelPolicy(true);
+		}
+		return alarms;
 	}
 
 	//===============================================================================
@@ -457,92 +1052,458 @@ public class BTSolver implements Runnable{
 	 */
 	public void solve()
 	{
+		ScheduledFuture<?> alarm = null;
+		if (deadline != Long.MAX_VALUE)
+		{
+			alarm = alarms().schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					stop(StopReason.Deadline);
+				}
+			}, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		if (cancellationToken != null)
+		{
+			cancellationToken.register(this);
+		}
+		
+		prepareSearch();
+		for (Variable v : network.getVariables())
+		{
+			if (v.isAssigned())
+			{
+				queue.add(v.getIndex());
+			}
+		}
+		
+		long acPreStart = System.nanoTime();
 		acPreStartTime = System.currentTimeMillis();
 		if (Preprocess == Preprocessing.ACPreprocessing)
 			arcConsistency();
 		acPreEndTime = System.currentTimeMillis();
 		
 		startTime = System.currentTimeMillis();
+		long searchStart = System.nanoTime();
+		timeLimitEnd = searchStart + timelimit * 1000000000L - (searchStart - acPreStart);
+		TimeLimitAlarm timeLimitAlarm = new TimeLimitAlarm();
+		timeLimitAlarm.schedule();
 		try {
-			solve(0);
+			if (propagators.isEmpty() || propagateRoot())
+			{
+				if (parallelism > 1 && splitDepth > 0)
+				{
+					solveInParallel();
+				}
+				else
+				{
+					search(0);
+				}
+			}
 		}catch (VariableSelectionException e)
 		{
 			System.out.println("error with variable selection heuristic.");
 		}
 		endTime = System.currentTimeMillis();
-		Trail.clearTrail();
+		stopReason.compareAndSet(StopReason.None, StopReason.Completed);
+		if (alarm != null)
+		{
+			alarm.cancel(false);
+		}
+		timeLimitAlarm.cancel();
+		if (cancellationToken != null)
+		{
+			cancellationToken.unregister(this);
+		}
+		
+		if (!hasSolution)
+		{
+			switch (stopReason.get())
+			{
+			case TimeLimit:
+			case Deadline:
+			case NodeLimit:		status = "timeout";
+			break;
+			case Cancelled:
+			case Interrupted:	status = "cancelled";
+			break;
+			default:
+			break;
+			}
+		}
+		trail.clear();
 	}
 
 	/**
-	 * Solver
-	 * @param level How deep the solver is in its recursion. 
-	 * @throws VariableSelectionException 
+	 * Creates the propagation queue and the variable selection index, and 
+	 * makes them follow the domain changes of the network. 
+	 */
+	void prepareSearch()
+	{
+		queue = new PropagationQueue(network.getVariables().size(), cChecks == ConsistencyCheck.IncrementalForwardChecking);
+		selectionIndex = new VariableSelectionIndex(network, 
+				varHeuristics == VariableSelectionHeuristic.Degree || varHeuristics == VariableSelectionHeuristic.MRVDH);
+		for (Variable v : network.getVariables())
+		{
+			v.setDomainListener(domainEvents);
+		}
+		int maxLevels = network.getVariables().size() + 1;
+		decisions = new Variable[maxLevels];
+		cursors = new int[maxLevels];
+		valueCounts = new int[maxLevels];
+		queueMarks = new int[maxLevels];
+		if (backjumping && !(parallelism > 1 && splitDepth > 0))
+		{
+			conflicts = new ConflictSets(network.getVariables().size(), maxLevels);
+			conflictMarks = new int[maxLevels];
+			if (maxNogoodSize > 0)
+			{
+				nogoods = new Nogoods(network.getVariables().size(), sudokuGrid.getN(), maxNogoodSize);
+				nogoodVariables = new int[maxNogoodSize];
+				nogoodValues = new int[maxNogoodSize];
+			}
+		}
+	}
+	
+	/**
+	 * Applies the propagators to the puzzle as given, before the first decision. 
+	 * @return false if the puzzle was found to have no solution
 	 */
+	private boolean propagateRoot()
+	{
+		units = new SudokuUnits(network);
+		return propagate();
+	}
 
-	private void solve(int level) throws VariableSelectionException
+	/**
+	 * Searches depth first below the current assignment. The search is a single 
+	 * loop over an explicit stack of decisions rather than a recursion, so its 
+	 * depth is not bounded by the Java stack: each level holds the variable 
+	 * assigned, the position of the next value to try and the mark of the 
+	 * propagation queue, while the trail keeps a breadcrumb per value tried. 
+	 * Returns as soon as the search has to stop, leaving the assignment in place. 
+	 * @param root level of the search at the current assignment
+	 * @throws VariableSelectionException 
+	 */
+	private void search(int root) throws VariableSelectionException
 	{
-		if(!Thread.currentThread().isInterrupted())
+		if (!open(root))
+		{
+			return;
+		}
+		int level = root;
+		while (true)
+		{
+			if (cursors[level] < valueCounts[level])
+			{
+				if (nodeLimit > 0 && nodeCount.incrementAndGet() > nodeLimit)
+				{
+					stop(StopReason.NodeLimit);
+					return;
+				}
+				int value = valueBuffers[level][cursors[level]++];
+				trail.placeBreadCrumb();
+				queueMarks[level] = queue.mark();
 
-		{//Check time limit
-			if (exceedTimeLimit())
+				//check a value
+				decide(level, value);
+				numAssignments++;
+				
+				//move to the next assignment
+				boolean isConsistent = propagate();
+				if (isConsistent && open(level + 1))
+				{
+					level++;
+					continue;
+				}
+				if (isConsistent && conflicts != null)
+				{
+					conflicts.solutionFound();
+				}
+			}
+			else if (level == root)
 			{
-				status = "timeout";
 				return;
 			}
+			else
+			{
+				//every value was tried, back to the level above
+				level--;
+				if (conflicts != null)
+				{
+					conflicts.failWithConflictsOf(level + 1);
+				}
+			}
 			
-			//Check if assignment is completed
-			if(hasSolution)
+			//the current value of the level failed at some stage, or more 
+			//solutions are wanted: backtrack
+			if (stopped.get())
 			{
 				return;
 			}
+			if (conflicts != null)
+			{
+				//jump back to the latest decision that caused the failure
+				learnNogood();
+				int target = conflicts.highestFailureLevel(level);
+				while (level > Math.max(target, root))
+				{
+					trail.undo();
+					level--;
+				}
+				if (target < root)
+				{
+					trail.undo();
+					queue.undo(queueMarks[level]);
+					conflicts.undo(conflictMarks[level]);
+					numBacktracks++;
+					return;
+				}
+				conflicts.addFailureTo(level);
+				conflicts.undo(conflictMarks[level]);
+			}
+			trail.undo();
+			queue.undo(queueMarks[level]);
+			numBacktracks++;
+		}
+	}
+	
+	/**
+	 * Assigns a value to the variable of a level. With backjumping, the decision 
+	 * becomes the reason of the variable's domain. 
+	 */
+	private void decide(int level, int value)
+	{
+		Variable v = decisions[level];
+		if (conflicts == null)
+		{
+			v.assign(value);
+			return;
+		}
+		conflictMarks[level] = conflicts.mark();
+		conflicts.setLevel(level);
+		conflicts.setCause(ConflictSets.EXPLICIT);
+		v.assign(value);
+		conflicts.decide(v.getIndex());
+		conflicts.setCause(ConflictSets.UNKNOWN);
+	}
+	
+	/**
+	 * Learns the decisions of the failure set as a nogood, if there is room for it. 
+	 */
+	private void learnNogood()
+	{
+		if (nogoods == null || !conflicts.isFailureNew() || conflicts.failureSize() > maxNogoodSize)
+		{
+			return;
+		}
+		int count = 0;
+		for (int l = conflicts.nextFailureLevel(0); l >= 0; l = conflicts.nextFailureLevel(l + 1))
+		{
+			nogoodVariables[count] = decisions[l].getIndex();
+			nogoodValues[count] = valueBuffers[l][cursors[l] - 1];
+			count++;
+		}
+		nogoods.add(nogoodVariables, nogoodValues, count);
+	}
+	
+	/**
+	 * Selects the variable of a new level and orders its values. 
+	 * @return true if the level has values to try, false if the search does not 
+	 * go on below it: it has to stop, the assignment is complete, or the level 
+	 * was searched by parallel tasks
+	 */
+	private boolean open(int level) throws VariableSelectionException
+	{
+		if (stopped.get() || !withinLimits())
+		{
+			return false;
+		}
+		
+		//Select unassigned variable
+		Variable v = selectNextVariable();		
 
-			//Select unassigned variable
-			Variable v = selectNextVariable();		
-
-			//check if the assignment is complete
-			if(v == null)
+		//check if the assignment is complete
+		if (v == null)
+		{
+			for (Variable var : network.getVariables())
 			{
-				for(Variable var : network.getVariables())
+				if (!var.isAssigned())
 				{
-					if(!var.isAssigned())
+					throw new VariableSelectionException("Something happened with the variable selection heuristic");
+				}
+			}
+			success();
+			return false;
+		}
+
+		//values of the variable being checked, in LCV order if asked
+		int[] values = valueBuffer(level, v.size());
+		int count = getNextValues(v, values);
+		
+		if (level < splitDepth && parallelism > 1)
+		{
+			solveSubtrees(v, values, count, level);
+			return false;
+		}
+		decisions[level] = v;
+		cursors[level] = 0;
+		valueCounts[level] = count;
+		if (conflicts != null)
+		{
+			conflicts.startConflicts(level, v.getIndex());
+		}
+		return true;
+	}
+
+	/**
+	 * Runs the search from the root on a new ForkJoinPool. 
+	 */
+	private void solveInParallel()
+	{
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			pool.invoke(new RecursiveAction() {
+				
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					try {
+						search(0);
+					}catch (VariableSelectionException e)
 					{
-						throw new VariableSelectionException("Something happened with the variable selection heuristic");
+						System.out.println("error with variable selection heuristic.");
 					}
 				}
-				success();
-				return;
+			});
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Searches the subtree below each value of v as a separate task, then 
+	 * collects their statistics and solution. 
+	 */
+	private void solveSubtrees(Variable v, int[] values, int numValues, int level)
+	{
+		List<SubtreeTask> tasks = new ArrayList<SubtreeTask>(numValues);
+		for (int k = 0; k < numValues; k++)
+		{
+			tasks.add(new SubtreeTask(v.getIndex(), values[k], level));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		
+		for (SubtreeTask task : tasks)
+		{
+			BTSolver subtree = task.solver;
+			numAssignments += subtree.numAssignments;
+			numBacktracks += subtree.numBacktracks;
+			if (subtree.hasSolution && !hasSolution)
+			{
+				hasSolution = true;
+				sudokuGrid = subtree.sudokuGrid;
+				status = subtree.status;
+			}
+		}
+	}
+	
+	/**
+	 * Assigns a value on a copy of the parent's state and searches below it. 
+	 */
+	private void solveSubtree(int index, int value, int level)
+	{
+		if (stopped.get())
+		{
+			return;
+		}
+		if (nodeLimit > 0 && nodeCount.incrementAndGet() > nodeLimit)
+		{
+			stop(StopReason.NodeLimit);
+			return;
+		}
+		network.getVariables().get(index).assign(value);
+		numAssignments++;
+		try {
+			if (propagate())
+			{
+				search(level + 1);
 			}
+		}catch (VariableSelectionException e)
+		{
+			System.out.println("error with variable selection heuristic.");
+		}
+		if (!stopped.get())
+		{
+			numBacktracks++;
+		}
+	}
+	
+	/**
+	 * Task searching the subtree below one value of a variable. 
+	 */
+	private class SubtreeTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int index;
+		private final int value;
+		private final int level;
+		private BTSolver solver;
+		
+		SubtreeTask(int index, int value, int level)
+		{
+			this.index = index;
+			this.value = value;
+			this.level = level;
+		}
 
-			//loop through the values of the variable being checked LCV
+		@Override
+		protected void compute() {
+			solver = new BTSolver(BTSolver.this);
+			solver.solveSubtree(index, value, level);
+		}
+	}
 
-			
-			for(Integer i : getNextValues(v))
+	/**
+	 * Stops the search at the time limit. The time spent in the solution 
+	 * listener is not counted, so an alarm that goes off while some of it is 
+	 * left schedules itself again for what is left. 
+	 */
+	private class TimeLimitAlarm implements Runnable {
+		
+		private ScheduledFuture<?> future;
+		private boolean cancelled;
+		
+		synchronized void schedule()
+		{
+			if (!cancelled)
 			{
-				trail.placeBreadCrumb();
-
-				//check a value
-				v.updateDomain(new Domain(i));
-				numAssignments++;
-				boolean isConsistent = checkConsistency();
-				
-				//move to the next assignment
-				if(isConsistent)
-				{		
-					solve(level + 1);
-				}
+				long left = timeLimitEnd + listenerNanos.get() - System.nanoTime();
+				future = alarms().schedule(this, left, TimeUnit.NANOSECONDS);
+			}
+		}
+		
+		synchronized void cancel()
+		{
+			cancelled = true;
+			future.cancel(false);
+		}
 
-				//if this assignment failed at any stage, backtrack
-				if(!hasSolution)
-				{
-					trail.undo();
-					numBacktracks++;
-				}
-				
-				else
-				{
-					return;
-				}
-			}	
+		@Override
+		public void run() {
+			if (System.nanoTime() - listenerNanos.get() - timeLimitEnd >= 0)
+			{
+				stop(StopReason.TimeLimit);
+			}
+			else
+			{
+				schedule();
+			}
 		}
 	}
 
@@ -0,0 +1,61 @@
+package cspSolver;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cancels any number of solves from outside, such as all the solves of a 
+ * request whose client went away. Solvers registered with the token are 
+ * cancelled as soon as cancel is called, so they stop at their next node. 
+ * A token cannot be reset. 
+ */
+public class CancellationToken {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private volatile boolean cancelled;
+	private final CopyOnWriteArrayList<Solver> solvers = new CopyOnWriteArrayList<Solver>();
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Cancels every registered solver, and every solver registered later. 
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+		for (Solver solver : solvers)
+		{
+			solver.cancel();
+		}
+	}
+
+	/**
+	 * Cancels <tt>solver</tt> when the token is cancelled, at once if it already is. 
+	 */
+	public void register(Solver solver)
+	{
+		solvers.add(solver);
+		if (cancelled)
+		{
+			solver.cancel();
+		}
+	}
+
+	public void unregister(Solver solver)
+	{
+		solvers.remove(solver);
+	}
+}
@@ -0,0 +1,339 @@
+package cspSolver;
+
+import java.util.Arrays;
+
+/**
+ * Explanations of the domains of a search, for conflict-directed backjumping.
+ * Levels are the levels of the decision stack of BTSolver, and a set of levels
+ * stands for the decisions made at them.
+ *
+ * The reason of a variable is a set of levels whose decisions, together with
+ * the puzzle's clues, caused every value removed from its domain. A decision
+ * is its own reason. A value removed because a neighbor was assigned adds the
+ * reason of that neighbor, and a value removed for a cause that is not known,
+ * such as a deduction rule, adds every level up to the current one. Reasons
+ * only grow along a branch, every change is logged so that backtracking can
+ * undo it, as with the PropagationQueue.
+ *
+ * The failure set explains the latest failure. Each level also keeps the union
+ * of the reason of its variable and of the failures met below its values: once
+ * the variable runs out of values, the highest of those levels is the one to
+ * jump back to.
+ */
+class ConflictSets implements DomainListener {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	/** cause of the domain changes whose reason is added by the caller */
+	static final int EXPLICIT = -2;
+	/** cause of the domain changes whose reason is not known */
+	static final int UNKNOWN = -1;
+
+	private final int words;			//longs per set
+	private final long[] reasons;		//[variable * words + word]
+	private final long[] conflicts;		//[level * words + word]
+	private final boolean[] solutionBelow;	//a solution was found below the level's variable
+	private final long[] failure;
+	private boolean failureAfterSolution;
+	private boolean failureLearned;		//the failure is a nogood that held
+
+	private int level = -1;				//level of the decision being propagated, -1 before the first one
+	private int cause = UNKNOWN;		//variable whose assignment is being propagated
+
+	private int[] loggedWords = new int[64];
+	private long[] loggedValues = new long[64];
+	private int numLogged;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param numVariables number of variables in the network
+	 * @param numLevels number of levels of the decision stack
+	 */
+	ConflictSets(int numVariables, int numLevels)
+	{
+		this.words = (numLevels + 63) >>> 6;
+		this.reasons = new long[numVariables * words];
+		this.conflicts = new long[numLevels * words];
+		this.solutionBelow = new boolean[numLevels];
+		this.failure = new long[words];
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return a mark to pass to undo, the current position in the log
+	 */
+	public int mark()
+	{
+		return numLogged;
+	}
+
+	/**
+	 * @return the highest level of the failure set, at most <tt>max</tt>, -1 if there is none
+	 */
+	public int highestFailureLevel(int max)
+	{
+		for (int w = Math.min(max >>> 6, words - 1); w >= 0; w--)
+		{
+			long bits = failure[w];
+			if (w == max >>> 6 && (max & 63) != 63)
+			{
+				bits &= (1L << ((max & 63) + 1)) - 1;
+			}
+			if (bits != 0)
+			{
+				return (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the lowest level of the failure set from <tt>from</tt> on, -1 if there is none
+	 */
+	public int nextFailureLevel(int from)
+	{
+		for (int w = from >>> 6; w < words; w++)
+		{
+			long bits = failure[w];
+			if (w == from >>> 6)
+			{
+				bits &= -1L << (from & 63);
+			}
+			if (bits != 0)
+			{
+				return (w << 6) + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of levels in the failure set
+	 */
+	public int failureSize()
+	{
+		int size = 0;
+		for (long bits : failure)
+		{
+			size += Long.bitCount(bits);
+		}
+		return size;
+	}
+
+	/**
+	 * @return false if the failure set must not be learned: it does not explain 
+	 * a failure but the end of a subtree holding a solution, or it comes from a
+	 * nogood already learned
+	 */
+	public boolean isFailureNew()
+	{
+		return !failureAfterSolution && !failureLearned;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Starts propagating the decision of <tt>level</tt>.
+	 */
+	public void setLevel(int level)
+	{
+		this.level = level;
+	}
+
+	/**
+	 * @param cause index of the variable whose assignment is being propagated,
+	 * UNKNOWN or EXPLICIT
+	 */
+	public void setCause(int cause)
+	{
+		this.cause = cause;
+	}
+
+	/**
+	 * Makes the decision of the current level the only reason of <tt>var</tt>.
+	 */
+	public void decide(int var)
+	{
+		int base = var * words;
+		for (int w = 0; w < words; w++)
+		{
+			set(base + w, 0);
+		}
+		set(base + (level >>> 6), 1L << (level & 63));
+	}
+
+	/**
+	 * Adds the reason of <tt>from</tt> to the reason of <tt>var</tt>.
+	 */
+	public void addReason(int var, int from)
+	{
+		int base = var * words;
+		int fromBase = from * words;
+		for (int w = 0; w < words; w++)
+		{
+			set(base + w, reasons[base + w] | reasons[fromBase + w]);
+		}
+	}
+
+	/**
+	 * Explains a failure by the reasons of the variables given.
+	 */
+	public void fail(int var, int other)
+	{
+		clearFailure();
+		addToFailure(var);
+		addToFailure(other);
+	}
+
+	/**
+	 * Empties the failure set, to be filled by addToFailure.
+	 */
+	public void clearFailure()
+	{
+		Arrays.fill(failure, 0L);
+		failureAfterSolution = false;
+		failureLearned = false;
+	}
+	
+	/**
+	 * Explains a failure by a nogood, filled by addToFailure.
+	 */
+	public void clearFailureOfNogood()
+	{
+		clearFailure();
+		failureLearned = true;
+	}
+
+	public void addToFailure(int var)
+	{
+		int base = var * words;
+		for (int w = 0; w < words; w++)
+		{
+			failure[w] |= reasons[base + w];
+		}
+	}
+
+	/**
+	 * Explains a failure of unknown cause by every level up to the current one.
+	 */
+	public void failAll()
+	{
+		clearFailure();
+		for (int w = 0; w <= level >>> 6 && level >= 0; w++)
+		{
+			failure[w] = w < level >>> 6 ? -1L : -1L >>> (63 - (level & 63));
+		}
+	}
+
+	/**
+	 * Ends the subtree of the current level after a solution: the levels above
+	 * have to be searched in full, as by chronological backtracking.
+	 */
+	public void solutionFound()
+	{
+		failAll();
+		failureAfterSolution = true;
+	}
+
+	/**
+	 * Makes the failure set the union of the failures met below <tt>level</tt>,
+	 * once its variable has run out of values.
+	 */
+	public void failWithConflictsOf(int level)
+	{
+		System.arraycopy(conflicts, level * words, failure, 0, words);
+		failureAfterSolution = solutionBelow[level];
+		failureLearned = false;
+	}
+
+	/**
+	 * Adds the failure set, less <tt>level</tt> itself, to the conflicts of <tt>level</tt>.
+	 */
+	public void addFailureTo(int level)
+	{
+		int base = level * words;
+		for (int w = 0; w < words; w++)
+		{
+			conflicts[base + w] |= failure[w];
+		}
+		conflicts[base + (level >>> 6)] &= ~(1L << (level & 63));
+		solutionBelow[level] |= failureAfterSolution;
+	}
+
+	/**
+	 * Starts the conflicts of a level whose variable was just selected with the
+	 * reason of the variable: the values already gone from its domain fail too.
+	 */
+	public void startConflicts(int level, int var)
+	{
+		System.arraycopy(reasons, var * words, conflicts, level * words, words);
+		solutionBelow[level] = false;
+	}
+
+	/**
+	 * Restores the reasons as they were when <tt>mark</tt> was obtained.
+	 * @param mark value returned by mark()
+	 */
+	public void undo(int mark)
+	{
+		while (numLogged > mark)
+		{
+			numLogged--;
+			reasons[loggedWords[numLogged]] = loggedValues[numLogged];
+		}
+	}
+
+	private void set(int word, long value)
+	{
+		if (reasons[word] == value)
+		{
+			return;
+		}
+		if (numLogged == loggedWords.length)
+		{
+			loggedWords = Arrays.copyOf(loggedWords, numLogged * 2);
+			loggedValues = Arrays.copyOf(loggedValues, numLogged * 2);
+		}
+		loggedWords[numLogged] = word;
+		loggedValues[numLogged] = reasons[word];
+		numLogged++;
+		reasons[word] = value;
+	}
+
+	//===============================================================================
+	// DomainListener
+	//===============================================================================
+
+	/**
+	 * Adds the cause of a removal to the reason of the variable. Domains growing
+	 * back on backtracking are left to undo.
+	 */
+	@Override
+	public void domainChanged(Variable v, int oldSize)
+	{
+		if (v.size() >= oldSize || cause == EXPLICIT)
+		{
+			return;
+		}
+		if (cause >= 0)
+		{
+			addReason(v.getIndex(), cause);
+			return;
+		}
+		int base = v.getIndex() * words;
+		for (int w = 0; w <= level >>> 6 && level >= 0; w++)
+		{
+			set(base + w, reasons[base + w] | (w < level >>> 6 ? -1L : -1L >>> (63 - (level & 63))));
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package cspSolver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -9,6 +11,10 @@ import java.util.Set;
  * CSP representation of the problem. Contains the variables, constraints, and 
  * many helpful accessors. 
  *
+ * The neighbors and constraints of every variable are indexed by a 
+ * NetworkTopology, either given to the constructor or built the first time 
+ * they are asked for. The index is rebuilt only if variables or constraints 
+ * are added afterwards.
  */
 public class ConstraintNetwork {
 	
@@ -18,6 +24,11 @@ public class ConstraintNetwork {
 	
 	private List<Constraint> constraints;
 	private List<Variable> variables;
+	private Set<Constraint> constraintSet;
+	
+	private NetworkTopology topology;
+	private List<Variable>[] neighbors;
+	private List<Constraint>[] constraintsOf;
 	
 	//===============================================================================
 	// Constructor 
@@ -27,6 +38,39 @@ public class ConstraintNetwork {
 	{
 		variables = new ArrayList<Variable>();
 		constraints = new ArrayList<Constraint>();
+		constraintSet = new HashSet<Constraint>();
+	}
+	
+	/**
+	 * Builds the constraints of <tt>topology</tt> over the variables given, 
+	 * which take their index in the list. 
+	 * @param topology shape of the network, shared with other networks
+	 * @param variables one variable per variable of the topology
+	 */
+	public ConstraintNetwork(NetworkTopology topology, List<Variable> variables)
+	{
+		if (variables.size() != topology.getNumVariables())
+		{
+			throw new IllegalArgumentException(variables.size() + " variables for a topology of " + topology.getNumVariables());
+		}
+		this.variables = new ArrayList<Variable>(variables);
+		for (int i = 0; i < variables.size(); i++)
+		{
+			variables.get(i).setIndex(i);
+		}
+		this.constraints = new ArrayList<Constraint>(topology.getNumConstraints());
+		for (int c = 0; c < topology.getNumConstraints(); c++)
+		{
+			int[] indices = topology.getConstraint(c);
+			List<Variable> vars = new ArrayList<Variable>(indices.length);
+			for (int i : indices)
+			{
+				vars.add(variables.get(i));
+			}
+			constraints.add(new Constraint(vars));
+		}
+		this.constraintSet = new HashSet<Constraint>(constraints);
+		this.topology = topology;
 	}
 	
 	//===============================================================================
@@ -35,17 +79,24 @@ public class ConstraintNetwork {
 	
 	public void add(Constraint c)
 	{
-		if (!constraints.contains(c))
+		if (constraintSet.add(c))
 		{
 			constraints.add(c);
+			topology = null;
+			neighbors = null;
 		}
 	}
 	
 	public void add(Variable v)
 	{
-		if(!variables.contains(v))
+		//a variable of this network is at its index
+		int index = v.getIndex();
+		if (index >= variables.size() || variables.get(index) != v)
 		{
+			v.setIndex(variables.size());
 			variables.add(v);
+			topology = null;
+			neighbors = null;
 		}
 	}
 
@@ -63,19 +114,48 @@ public class ConstraintNetwork {
 		return variables;
 	}
 	
-	public List<Variable> getNeighborsOfVariable(Variable v)
+	/**
+	 * @return the shape of the network, as it is now
+	 */
+	public NetworkTopology getTopology()
 	{
-		Set<Variable> neighbors = new HashSet<Variable>();
-		
-		for(Constraint c : constraints)
+		if (topology == null)
 		{
-			if(c.contains(v))
+			int[][] indices = new int[constraints.size()][];
+			for (int c = 0; c < indices.length; c++)
 			{
-				neighbors.addAll(c.vars);
+				List<Variable> vars = constraints.get(c).vars;
+				indices[c] = new int[vars.size()];
+				for (int k = 0; k < indices[c].length; k++)
+				{
+					indices[c][k] = vars.get(k).getIndex();
+				}
 			}
+			topology = new NetworkTopology(variables.size(), indices);
 		}
-		neighbors.remove(v);
-		return new ArrayList<Variable>(neighbors);
+		return topology;
+	}
+	
+	/**
+	 * @param v variable to check
+	 * @return unmodifiable list of the variables sharing a constraint with v, 
+	 * in index order
+	 */
+	public List<Variable> getNeighborsOfVariable(Variable v)
+	{
+		buildIndex();
+		return neighbors[v.getIndex()];
+	}
+	
+	/**
+	 * Same as getNeighborsOfVariable, as indices into getVariables(). 
+	 * The returned array is shared and must not be modified. 
+	 * @param index index of the variable to check
+	 * @return indices of the variables sharing a constraint with the variable
+	 */
+	public int[] getNeighborIndices(int index)
+	{
+		return getTopology().getNeighbors(index);
 	}
 	
 	/**
@@ -100,15 +180,8 @@ public class ConstraintNetwork {
 	 */
 	public List<Constraint> getConstraintsContainingVariable(Variable v)
 	{
-		List<Constraint> outList = new ArrayList<Constraint>();
-		for(Constraint c : constraints)
-		{
-			if(c.contains(v))
-			{
-				outList.add(c);
-			}
-		}
-		return outList;
+		buildIndex();
+		return constraintsOf[v.getIndex()];
 	}
 	
 	/**
@@ -142,6 +215,45 @@ public class ConstraintNetwork {
 		return mConstraints;
 	}
 
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+	
+	private void buildIndex()
+	{
+		if (neighbors != null)
+		{
+			return;
+		}
+		
+		NetworkTopology topology = getTopology();
+		int n = variables.size();
+		@SuppressWarnings("unchecked")
+		List<Variable>[] neighbors = (List<Variable>[]) new List<?>[n];
+		@SuppressWarnings("unchecked")
+		List<Constraint>[] constraintsOf = (List<Constraint>[]) new List<?>[n];
+		for (int i = 0; i < n; i++)
+		{
+			int[] indices = topology.getNeighbors(i);
+			Variable[] vars = new Variable[indices.length];
+			for (int k = 0; k < indices.length; k++)
+			{
+				vars[k] = variables.get(indices[k]);
+			}
+			indices = topology.getConstraintsOf(i);
+			Constraint[] cons = new Constraint[indices.length];
+			for (int k = 0; k < indices.length; k++)
+			{
+				cons[k] = constraints.get(indices[k]);
+			}
+			neighbors[i] = Collections.unmodifiableList(Arrays.asList(vars));
+			constraintsOf[i] = Collections.unmodifiableList(Arrays.asList(cons));
+		}
+		
+		this.constraintsOf = constraintsOf;
+		this.neighbors = neighbors;
+	}
+	
 	//===============================================================================
 	// String Representation 
 	//===============================================================================
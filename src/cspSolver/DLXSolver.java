@@ -0,0 +1,442 @@
+package cspSolver;
+
+import sudoku.SudokuFile;
+
+/**
+ * Dancing Links solver, i.e. Knuth's Algorithm X on a linked exact cover matrix.
+ * 
+ * The sudoku is turned into an exact cover problem: there is a row for every 
+ * (cell, value) pair and a column for every cell, (row, value), (column, value)
+ * and (block, value) pair. A solution is a set of rows covering every column 
+ * exactly once. The search branches on the column with the fewest rows left. 
+ * 
+ * Reports the same statistics as BTSolver: an assignment is a row added to the
+ * solution, a backtrack is a row taken back out. Like BTSolver, it can keep 
+ * searching after the first solution to count solutions up to a limit. 
+ */
+public class DLXSolver implements Solver {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+	
+	private SudokuFile sudokuGrid;
+	private boolean hasSolution = false;
+	private boolean stopped = false;		//search ended by the time limit or a cancellation
+	private volatile boolean cancelled;
+	private String status = "error";
+	private int solutionLimit = 1;
+	private int numSolutions;
+	
+	private int numAssignments;
+	private int numBacktracks;
+	private int timelimit;
+	private long startTime;
+	private long endTime;
+	
+	private final int N, p, q;
+	
+	//the matrix. Node 0 is the root, nodes 1 to numColumns the column headers.
+	private final int[] left, right, up, down;
+	private final int[] column;			//column header of each node
+	private final int[] rowOf;			//matrix row of each node
+	private final int[] columnSize;
+	private int numNodes;
+	
+	private final int[] solution;		//node of each row in the solution
+	private int solutionSize;
+	private boolean consistentGivens = true;
+	
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+	
+	public DLXSolver(SudokuFile sf, int timelimit)
+	{
+		this.sudokuGrid = sf;
+		this.timelimit = timelimit;
+		this.N = sf.getN();
+		this.p = sf.getP();
+		this.q = sf.getQ();
+		
+		int numColumns = 4 * N * N;
+		int numRows = N * N * N;
+		int size = 1 + numColumns + 4 * numRows;
+		left = new int[size];
+		right = new int[size];
+		up = new int[size];
+		down = new int[size];
+		column = new int[size];
+		rowOf = new int[size];
+		columnSize = new int[numColumns + 1];
+		solution = new int[N * N];
+		
+		for (int c = 0; c <= numColumns; c++)
+		{
+			left[c] = c == 0 ? numColumns : c - 1;
+			right[c] = c == numColumns ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+		numNodes = numColumns + 1;
+		
+		for (int i = 0; i < N; i++)
+		{
+			for (int j = 0; j < N; j++)
+			{
+				for (int v = 1; v <= N; v++)
+				{
+					addRow(i, j, v);
+				}
+			}
+		}
+		selectGivens(sf.getBoard());
+	}
+	
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+	
+	/**
+	 * Keeps searching after a solution, until <tt>limit</tt> solutions have been 
+	 * found or the whole tree has been searched. The first solution is the one 
+	 * returned by getSolution. A limit of 2 checks that a puzzle has a unique 
+	 * solution. 
+	 * @param limit number of solutions to stop at, 0 to count all of them
+	 * @see BTSolver#setSolutionLimit(int)
+	 */
+	public void setSolutionLimit(int limit)
+	{
+		this.solutionLimit = limit;
+	}
+	
+	public void cancel()
+	{
+		cancelled = true;
+	}
+	
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	public boolean hasSolution()
+	{
+		return hasSolution;
+	}
+
+	public SudokuFile getSolution()
+	{
+		return sudokuGrid;
+	}
+
+	public String getStatus()
+	{
+		return status;
+	}
+	
+	/**
+	 * @return number of solutions found, at most the solution limit
+	 */
+	public int getNumSolutions()
+	{
+		return numSolutions;
+	}
+	
+	/**
+	 * @return true if the puzzle was searched far enough to tell it has 
+	 * exactly one solution
+	 */
+	public boolean isUnique()
+	{
+		return numSolutions == 1 && !stopped && endTime != 0;
+	}
+	
+	public int getNumAssignments()
+	{
+		return numAssignments;
+	}
+
+	public int getNumBacktracks()
+	{
+		return numBacktracks;
+	}
+
+	public long getStartTime()
+	{
+		return startTime;
+	}
+	
+	public long getEndTime()
+	{
+		return endTime;
+	}
+	
+	public long getTimeTaken()
+	{
+		return endTime - startTime;
+	}
+	
+	/**
+	 * There is no preprocessing, it starts and ends when the search starts. 
+	 */
+	public long getACPreStartTime()
+	{
+		return startTime;
+	}
+	
+	public long getACPreEndTime()
+	{
+		return startTime;
+	}
+	
+	//===============================================================================
+	// Matrix
+	//===============================================================================
+	
+	private int matrixRow(int i, int j, int v)
+	{
+		return (i * N + j) * N + (v - 1);
+	}
+	
+	/**
+	 * @return the cell, row-value, column-value and block-value columns covered 
+	 * by placing v at row i, column j
+	 */
+	private int[] columnsOf(int i, int j, int v)
+	{
+		int block = (i / p * p) + j / q;
+		return new int[] {
+			1 + i * N + j,
+			1 + N * N + i * N + (v - 1),
+			1 + 2 * N * N + j * N + (v - 1),
+			1 + 3 * N * N + block * N + (v - 1)
+		};
+	}
+	
+	private void addRow(int i, int j, int v)
+	{
+		int row = matrixRow(i, j, v);
+		int first = numNodes;
+		for (int c : columnsOf(i, j, v))
+		{
+			addNode(row, c);
+		}
+		for (int n = first; n < numNodes; n++)
+		{
+			left[n] = n == first ? numNodes - 1 : n - 1;
+			right[n] = n == numNodes - 1 ? first : n + 1;
+		}
+	}
+	
+	private void addNode(int row, int c)
+	{
+		int n = numNodes++;
+		column[n] = c;
+		rowOf[n] = row;
+		up[n] = up[c];
+		down[n] = c;
+		down[up[c]] = n;
+		up[c] = n;
+		columnSize[c]++;
+	}
+	
+	/**
+	 * Adds the rows of the given cells to the solution. Marks the puzzle as 
+	 * unsolvable if two givens share a column. 
+	 */
+	private void selectGivens(int[][] board)
+	{
+		boolean[] covered = new boolean[columnSize.length];
+		for (int i = 0; i < N; i++)
+		{
+			for (int j = 0; j < N; j++)
+			{
+				int v = board[i][j];
+				if (v == 0)
+				{
+					continue;
+				}
+				int[] columns = columnsOf(i, j, v);
+				for (int c : columns)
+				{
+					if (covered[c])
+					{
+						consistentGivens = false;
+						return;
+					}
+					covered[c] = true;
+				}
+				int node = nodeOfRow(matrixRow(i, j, v), columns[0]);
+				for (int n = node, k = 0; k < 4; n = right[n], k++)
+				{
+					cover(column[n]);
+				}
+				solution[solutionSize++] = node;
+			}
+		}
+	}
+	
+	/**
+	 * @return the node of matrix row <tt>row</tt> in column <tt>c</tt>
+	 */
+	private int nodeOfRow(int row, int c)
+	{
+		for (int n = down[c]; n != c; n = down[n])
+		{
+			if (rowOf[n] == row)
+			{
+				return n;
+			}
+		}
+		throw new IllegalStateException("Row " + row + " is not in column " + c);
+	}
+	
+	private void cover(int c)
+	{
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for (int i = down[c]; i != c; i = down[i])
+		{
+			for (int j = right[i]; j != i; j = right[j])
+			{
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				columnSize[column[j]]--;
+			}
+		}
+	}
+	
+	private void uncover(int c)
+	{
+		for (int i = up[c]; i != c; i = up[i])
+		{
+			for (int j = left[i]; j != i; j = left[j])
+			{
+				columnSize[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+	
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+	
+	/**
+	 * Called when solver finds a solution. The first one is kept, written with 
+	 * the same layout as Converter.ConstraintNetworkToSudokuFile, so that 
+	 * BTSolver and DLXSolver solutions are read the same way. 
+	 * @return true if the solution limit is reached
+	 */
+	private boolean success()
+	{
+		numSolutions++;
+		if (hasSolution)
+		{
+			return numSolutions == solutionLimit;
+		}
+		int[][] board = new int[N][N];
+		for (int k = 0; k < solutionSize; k++)
+		{
+			int row = rowOf[solution[k]];
+			int cell = row / N;
+			board[cell % N][cell / N] = row % N + 1;
+		}
+		hasSolution = true;
+		sudokuGrid = new SudokuFile(N, p, q, board);
+		status = "success";
+		return numSolutions == solutionLimit;
+	}
+	
+	private boolean exceedTimeLimit()
+	{
+		return timelimit <= (System.currentTimeMillis() - startTime) / 1000;
+	}
+	
+	//===============================================================================
+	// Solver
+	//===============================================================================
+	
+	public void solve()
+	{
+		startTime = System.currentTimeMillis();
+		if (consistentGivens)
+		{
+			search();
+		}
+		if (stopped && !hasSolution)
+		{
+			status = cancelled ? "cancelled" : "timeout";
+		}
+		endTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Algorithm X. 
+	 * @return true if the solution limit was reached, false if the search 
+	 * should go on or was stopped
+	 */
+	private boolean search()
+	{
+		if (right[0] == 0)
+		{
+			return success();
+		}
+		if (cancelled || Thread.currentThread().isInterrupted() || exceedTimeLimit())
+		{
+			stopped = true;
+			return false;
+		}
+		
+		int c = right[0];
+		for (int h = right[c]; h != 0; h = right[h])
+		{
+			if (columnSize[h] < columnSize[c])
+			{
+				c = h;
+			}
+		}
+		if (columnSize[c] == 0)
+		{
+			return false;
+		}
+		
+		cover(c);
+		for (int r = down[c]; r != c; r = down[r])
+		{
+			solution[solutionSize++] = r;
+			numAssignments++;
+			for (int j = right[r]; j != r; j = right[j])
+			{
+				cover(column[j]);
+			}
+			
+			if (search())
+			{
+				return true;
+			}
+			if (stopped)
+			{
+				return false;
+			}
+			
+			for (int j = left[r]; j != r; j = left[j])
+			{
+				uncover(column[j]);
+			}
+			solutionSize--;
+			numBacktracks++;
+		}
+		uncover(c);
+		return false;
+	}
+
+	@Override
+	public void run() {
+		solve();
+	}
+}
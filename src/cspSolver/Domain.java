@@ -1,12 +1,18 @@
 package cspSolver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Represents the domain of a variable, i.e. the possible values that each
  * variable may assign. 
+ *
+ * Values are stored as a bitmask, value v occupying bit v-1. Domains whose
+ * values are all at most 64 use a single long, larger domains use a long[].
+ * Values must be positive.
  */
 public class Domain implements Iterable<Integer>{
 	
@@ -14,7 +20,8 @@ public class Domain implements Iterable<Integer>{
 	// Properties
 	//===============================================================================
 	
-	private ArrayList<Integer> values = new ArrayList<Integer>();
+	private long bits;
+	private long[] words;	//null while every value fits in bits
 	private boolean modified;
 	
 	//===============================================================================
@@ -27,7 +34,7 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public Domain(int value)
 	{
-		values.add(value);
+		add(value);
 	}
 	
 	/**
@@ -38,7 +45,7 @@ public class Domain implements Iterable<Integer>{
 	{
 		for(int i = 0; i < values.length; i++)
 		{
-			this.values.add(values[i]);
+			add(values[i]);
 		}
 	}
 	
@@ -48,8 +55,10 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public Domain(List<Integer> values)
 	{
-		this.values.clear();
-		this.values.addAll(values);
+		for(int i = 0; i < values.size(); i++)
+		{
+			add(values.get(i));
+		}
 	}
 	
 	/**
@@ -59,10 +68,8 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public Domain(Domain d)
 	{
-		for(Integer value : d.getValues())
-		{
-			this.values.add(value);
-		}
+		this.bits = d.bits;
+		this.words = d.words == null ? null : d.words.clone();
 	}
 	
 	//===============================================================================
@@ -76,10 +83,16 @@ public class Domain implements Iterable<Integer>{
 	 *  	...
 	 *  }
 	 *  
-	 * @return ArrayList of values in Domain
+	 * @return ArrayList of values in Domain, lowest to highest. The list is a copy,
+	 * changing it does not change the domain.
 	 */
 	public ArrayList<Integer> getValues()
 	{
+		ArrayList<Integer> values = new ArrayList<Integer>(size());
+		for(int value = min(); value != 0; value = nextValue(value))
+		{
+			values.add(value);
+		}
 		return values;
 	}
 	
@@ -90,11 +103,16 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public boolean contains(int value)
 	{
-		if (values.contains(value))
+		if (value < 1)
 		{
-			return true;
+			return false;
+		}
+		if (words == null)
+		{
+			return value <= 64 && (bits & (1L << (value - 1))) != 0;
 		}
-		return false;
+		int word = (value - 1) >>> 6;
+		return word < words.length && (words[word] & (1L << (value - 1))) != 0;
 	}
 	
 	/** 
@@ -102,7 +120,16 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public int size()
 	{
-		return values.size();
+		if (words == null)
+		{
+			return Long.bitCount(bits);
+		}
+		int size = 0;
+		for (int i = 0; i < words.length; i++)
+		{
+			size += Long.bitCount(words[i]);
+		}
+		return size;
 	}
 	
 	/**
@@ -110,7 +137,116 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public boolean isEmpty()
 	{
-		return values.isEmpty();
+		if (words == null)
+		{
+			return bits == 0;
+		}
+		for (int i = 0; i < words.length; i++)
+		{
+			if (words[i] != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the lowest value in the domain, 0 if the domain is empty
+	 */
+	public int min()
+	{
+		return nextValue(0);
+	}
+
+	/**
+	 * Allows iterating over the domain without boxing:
+	 * 	for(int i = d.min(); i != 0; i = d.nextValue(i))
+	 *
+	 * @param value a value, not necessarily in the domain
+	 * @return the lowest value in the domain greater than <tt>value</tt>, 0 if there is none
+	 */
+	public int nextValue(int value)
+	{
+		if (value < 0)
+		{
+			value = 0;
+		}
+		if (words == null)
+		{
+			if (value >= 64)
+			{
+				return 0;
+			}
+			long remaining = bits & (-1L << value);
+			return remaining == 0 ? 0 : Long.numberOfTrailingZeros(remaining) + 1;
+		}
+		int word = value >>> 6;
+		if (word >= words.length)
+		{
+			return 0;
+		}
+		long remaining = words[word] & (-1L << value);
+		while (remaining == 0)
+		{
+			if (++word == words.length)
+			{
+				return 0;
+			}
+			remaining = words[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(remaining) + 1;
+	}
+
+	/**
+	 * @return number of longs needed to hold the bits of the domain
+	 */
+	public int wordCount()
+	{
+		return words == null ? 1 : words.length;
+	}
+
+	/**
+	 * Copies the bits of the domain into <tt>dest</tt>. Used by the Trail.
+	 * @param dest array to copy into
+	 * @param offset position of the first word in dest
+	 * @param count number of words to write, unused words are written as 0
+	 */
+	public void copyBitsTo(long[] dest, int offset, int count)
+	{
+		if (words == null)
+		{
+			dest[offset] = bits;
+			Arrays.fill(dest, offset + 1, offset + count, 0L);
+		}
+		else
+		{
+			int n = Math.min(count, words.length);
+			System.arraycopy(words, 0, dest, offset, n);
+			Arrays.fill(dest, offset + n, offset + count, 0L);
+		}
+	}
+
+	/**
+	 * Replaces the values of the domain with bits previously written by copyBitsTo.
+	 * @param src array to copy from
+	 * @param offset position of the first word in src
+	 * @param count number of words to read
+	 */
+	public void copyBitsFrom(long[] src, int offset, int count)
+	{
+		if (words == null && count == 1)
+		{
+			bits = src[offset];
+			return;
+		}
+		if (words == null || words.length < count)
+		{
+			words = new long[count];
+			bits = 0;
+		}
+		System.arraycopy(src, offset, words, 0, count);
+		Arrays.fill(words, count, words.length, 0L);
 	}
 	
 	/**
@@ -133,17 +269,37 @@ public class Domain implements Iterable<Integer>{
 	 */
 	public boolean remove(int value)
 	{
-		Integer v = value;
-		
 		if(!contains(value))
 		{
 			return false;
 		}
 		
 		setModified(true);
-		values.remove(v);
+		if (words == null)
+		{
+			bits &= ~(1L << (value - 1));
+		}
+		else
+		{
+			words[(value - 1) >>> 6] &= ~(1L << (value - 1));
+		}
 		return true;
 	}
+
+	/**
+	 * Reduces the domain to the single value <tt>value</tt>.
+	 * @param value the value to keep
+	 */
+	public void retainOnly(int value)
+	{
+		bits = 0;
+		if (words != null)
+		{
+			Arrays.fill(words, 0L);
+		}
+		add(value);
+		setModified(true);
+	}
 	
 	/**
 	 * Sets modified flag.
@@ -154,13 +310,62 @@ public class Domain implements Iterable<Integer>{
 		this.modified = modified;
 	}
 
+	private void add(int value)
+	{
+		if (value < 1)
+		{
+			throw new IllegalArgumentException("Domain values must be positive: " + value);
+		}
+		if (words == null && value <= 64)
+		{
+			bits |= 1L << (value - 1);
+			return;
+		}
+		int word = (value - 1) >>> 6;
+		if (words == null)
+		{
+			words = new long[word + 1];
+			words[0] = bits;
+			bits = 0;
+		}
+		else if (word >= words.length)
+		{
+			words = Arrays.copyOf(words, word + 1);
+		}
+		words[word] |= 1L << (value - 1);
+	}
+
 	//===============================================================================
 	// Iterator
 	//===============================================================================
 	
 	@Override
 	public Iterator<Integer> iterator() {
-		return values.iterator();
+		return new Iterator<Integer>() {
+
+			private int next = min();
+
+			@Override
+			public boolean hasNext() {
+				return next != 0;
+			}
+
+			@Override
+			public Integer next() {
+				if (next == 0)
+				{
+					throw new NoSuchElementException();
+				}
+				int value = next;
+				next = nextValue(value);
+				return value;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 	
 	//===============================================================================
@@ -171,7 +376,7 @@ public class Domain implements Iterable<Integer>{
 	{
 		StringBuilder sb = new StringBuilder("{");
 		String delim = "";
-		for (Integer i : values)
+		for(int i = min(); i != 0; i = nextValue(i))
 		{
 			sb.append(delim).append(i);
 			delim = ",";
@@ -180,4 +385,3 @@ public class Domain implements Iterable<Integer>{
 		return sb.toString();
 	}
 }
-
@@ -0,0 +1,15 @@
+package cspSolver;
+
+/**
+ * Receives the changes made to the domains of variables. 
+ * @see Variable#setDomainListener(DomainListener)
+ */
+public interface DomainListener {
+	
+	/**
+	 * Called after the domain of a variable changed. 
+	 * @param v the variable whose domain changed
+	 * @param oldSize size of the domain before the change
+	 */
+	public void domainChanged(Variable v, int oldSize);
+}
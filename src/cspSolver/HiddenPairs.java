@@ -0,0 +1,46 @@
+package cspSolver;
+
+/**
+ * Hidden pairs: two values that can only go in the same two positions of a 
+ * unit occupy those positions, so every other value is removed from them. 
+ */
+public class HiddenPairs implements Propagator {
+
+	@Override
+	public boolean propagate(SudokuUnits units)
+	{
+		for (int u = 0; u < units.size(); u++)
+		{
+			Variable[] cells = units.getCells(u);
+			for (int x = 1; x <= cells.length; x++)
+			{
+				long mask = units.getPositions(u, x);
+				if (Long.bitCount(mask) != 2)
+				{
+					continue;
+				}
+				for (int y = x + 1; y <= cells.length; y++)
+				{
+					if (units.getPositions(u, y) != mask)
+					{
+						continue;
+					}
+					for (long bits = mask; bits != 0; bits &= bits - 1)
+					{
+						Variable v = cells[Long.numberOfTrailingZeros(bits)];
+						Domain d = v.getDomain();
+						for (int value = d.min(); value != 0; value = d.nextValue(value))
+						{
+							if (value != x && value != y && !units.remove(v, value))
+							{
+								return false;
+							}
+						}
+					}
+					break;
+				}
+			}
+		}
+		return true;
+	}
+}
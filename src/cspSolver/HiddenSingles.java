@@ -0,0 +1,38 @@
+package cspSolver;
+
+/**
+ * Hidden singles: a value that has a single possible position in a unit is 
+ * assigned there. A value with no possible position is a contradiction. 
+ */
+public class HiddenSingles implements Propagator {
+
+	@Override
+	public boolean propagate(SudokuUnits units)
+	{
+		for (int u = 0; u < units.size(); u++)
+		{
+			Variable[] cells = units.getCells(u);
+			for (int value = 1; value <= cells.length; value++)
+			{
+				long mask = units.getPositions(u, value);
+				if (mask == 0)
+				{
+					return false;
+				}
+				if ((mask & (mask - 1)) == 0)
+				{
+					Variable v = cells[Long.numberOfTrailingZeros(mask)];
+					if (!v.getDomain().contains(value))
+					{
+						return false;
+					}
+					if (!v.isAssigned())
+					{
+						units.assign(v, value);
+					}
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,44 @@
+package cspSolver;
+
+/**
+ * Naked pairs: two variables of a unit left with the same two values take 
+ * both of them, so the two values are removed from the rest of the unit. 
+ */
+public class NakedPairs implements Propagator {
+
+	@Override
+	public boolean propagate(SudokuUnits units)
+	{
+		for (int u = 0; u < units.size(); u++)
+		{
+			Variable[] cells = units.getCells(u);
+			for (int i = 0; i < cells.length; i++)
+			{
+				if (cells[i].size() != 2)
+				{
+					continue;
+				}
+				Domain pair = cells[i].getDomain();
+				int x = pair.min();
+				int y = pair.nextValue(x);
+				for (int j = i + 1; j < cells.length; j++)
+				{
+					Domain other = cells[j].getDomain();
+					if (other.size() != 2 || !other.contains(x) || !other.contains(y))
+					{
+						continue;
+					}
+					for (int k = 0; k < cells.length; k++)
+					{
+						if (k != i && k != j && (!units.remove(cells[k], x) || !units.remove(cells[k], y)))
+						{
+							return false;
+						}
+					}
+					break;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,129 @@
+package cspSolver;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a ConstraintNetwork without its domains: the variables of each
+ * constraint, and the constraints and neighbors of each variable, all as
+ * indices. A topology is immutable, so every network of the same shape can
+ * share one, from any thread.
+ */
+public final class NetworkTopology {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int numVariables;
+	private final int[][] constraints;		//indices of the variables of each constraint
+	private final int[][] constraintsOf;	//indices of the constraints of each variable, in order
+	private final int[][] neighbors;		//indices of the neighbors of each variable, sorted
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param numVariables number of variables, indexed from 0
+	 * @param constraints indices of the variables of each constraint, copied
+	 */
+	public NetworkTopology(int numVariables, int[][] constraints)
+	{
+		this.numVariables = numVariables;
+		this.constraints = new int[constraints.length][];
+		int[] counts = new int[numVariables];
+		for (int c = 0; c < constraints.length; c++)
+		{
+			this.constraints[c] = constraints[c].clone();
+			for (int i : constraints[c])
+			{
+				counts[i]++;
+			}
+		}
+
+		this.constraintsOf = new int[numVariables][];
+		for (int i = 0; i < numVariables; i++)
+		{
+			constraintsOf[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int c = 0; c < constraints.length; c++)
+		{
+			for (int i : constraints[c])
+			{
+				//a variable listed twice in a constraint is in it once
+				if (counts[i] == 0 || constraintsOf[i][counts[i] - 1] != c)
+				{
+					constraintsOf[i][counts[i]++] = c;
+				}
+			}
+		}
+
+		this.neighbors = new int[numVariables][];
+		boolean[] isNeighbor = new boolean[numVariables];
+		int[] found = new int[numVariables];
+		for (int i = 0; i < numVariables; i++)
+		{
+			constraintsOf[i] = Arrays.copyOf(constraintsOf[i], counts[i]);
+			int count = 0;
+			for (int c : constraintsOf[i])
+			{
+				for (int j : this.constraints[c])
+				{
+					if (j != i && !isNeighbor[j])
+					{
+						isNeighbor[j] = true;
+						found[count++] = j;
+					}
+				}
+			}
+			int[] indices = Arrays.copyOf(found, count);
+			Arrays.sort(indices);
+			for (int j : indices)
+			{
+				isNeighbor[j] = false;
+			}
+			neighbors[i] = indices;
+		}
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	public int getNumVariables()
+	{
+		return numVariables;
+	}
+
+	public int getNumConstraints()
+	{
+		return constraints.length;
+	}
+
+	/**
+	 * The returned arrays of this and the following methods are shared and must
+	 * not be modified.
+	 * @return indices of the variables of constraint <tt>c</tt>
+	 */
+	public int[] getConstraint(int c)
+	{
+		return constraints[c];
+	}
+
+	/**
+	 * @return indices of the constraints holding variable <tt>i</tt>, in order
+	 */
+	public int[] getConstraintsOf(int i)
+	{
+		return constraintsOf[i];
+	}
+
+	/**
+	 * @return indices of the variables sharing a constraint with variable <tt>i</tt>, sorted
+	 */
+	public int[] getNeighbors(int i)
+	{
+		return neighbors[i];
+	}
+}
@@ -0,0 +1,133 @@
+package cspSolver;
+
+import java.util.Arrays;
+
+/**
+ * Nogoods learned by conflict-directed backjumping: sets of assignments, each
+ * a variable and a value, that cannot all hold in a solution. Only nogoods of
+ * at most a given number of assignments are kept, up to a fixed number of
+ * them, so that checking them stays cheap.
+ *
+ * Every nogood is listed under each of its assignments, to be checked when
+ * one of its variables is assigned the value of the nogood.
+ */
+class Nogoods {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private static final int MAX_NOGOODS = 1 << 16;
+
+	private final int maxSize;
+	private int[][] variables = new int[64][];
+	private int[][] values = new int[64][];
+	private int size;
+
+	private final int maxValue;
+	private final int[][] watches;		//nogoods of each assignment, [variable * (maxValue + 1) + value]
+	private final int[] numWatches;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param numVariables number of variables in the network
+	 * @param maxValue largest value of a domain
+	 * @param maxSize largest number of assignments in a nogood kept
+	 */
+	Nogoods(int numVariables, int maxValue, int maxSize)
+	{
+		this.maxSize = maxSize;
+		this.maxValue = maxValue;
+		this.watches = new int[numVariables * (maxValue + 1)][];
+		this.numWatches = new int[numVariables * (maxValue + 1)];
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of nogoods kept
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * The arrays returned by this and the following methods are shared and must
+	 * not be modified.
+	 * @return nogoods assigning <tt>value</tt> to <tt>var</tt>, in the first 
+	 * getNumWatches(var, value) entries
+	 */
+	public int[] getWatches(int var, int value)
+	{
+		return watches[var * (maxValue + 1) + value];
+	}
+
+	public int getNumWatches(int var, int value)
+	{
+		return numWatches[var * (maxValue + 1) + value];
+	}
+
+	/**
+	 * @return variables of nogood <tt>n</tt>
+	 */
+	public int[] getVariables(int n)
+	{
+		return variables[n];
+	}
+
+	/**
+	 * @return values of nogood <tt>n</tt>, in the order of its variables
+	 */
+	public int[] getValues(int n)
+	{
+		return values[n];
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Keeps a nogood, unless it has more than the largest number of assignments
+	 * or the store is full.
+	 * @param vars variables of the nogood, copied
+	 * @param vals values of the nogood, copied
+	 * @param count number of assignments in the nogood
+	 * @return true if the nogood is kept
+	 */
+	public boolean add(int[] vars, int[] vals, int count)
+	{
+		if (count == 0 || count > maxSize || size == MAX_NOGOODS)
+		{
+			return false;
+		}
+		if (size == variables.length)
+		{
+			variables = Arrays.copyOf(variables, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		variables[size] = Arrays.copyOf(vars, count);
+		values[size] = Arrays.copyOf(vals, count);
+		for (int k = 0; k < count; k++)
+		{
+			int watch = vars[k] * (maxValue + 1) + vals[k];
+			if (watches[watch] == null)
+			{
+				watches[watch] = new int[4];
+			}
+			else if (numWatches[watch] == watches[watch].length)
+			{
+				watches[watch] = Arrays.copyOf(watches[watch], numWatches[watch] * 2);
+			}
+			watches[watch][numWatches[watch]++] = size;
+		}
+		size++;
+		return true;
+	}
+}
@@ -0,0 +1,89 @@
+package cspSolver;
+
+/**
+ * Pointing pairs and box-line reduction. If the positions of a value in a block 
+ * all lie in one row or column, the value is removed from the rest of that row 
+ * or column. If the positions of a value in a row or column all lie in one 
+ * block, the value is removed from the rest of that block. 
+ */
+public class PointingPairs implements Propagator {
+
+	@Override
+	public boolean propagate(SudokuUnits units)
+	{
+		for (int u = 0; u < units.size(); u++)
+		{
+			int kind = units.getKind(u);
+			if (kind == SudokuUnits.OTHER)
+			{
+				continue;
+			}
+			Variable[] cells = units.getCells(u);
+			for (int value = 1; value <= cells.length; value++)
+			{
+				long mask = units.getPositions(u, value);
+				if (mask == 0)
+				{
+					continue;
+				}
+				Variable first = cells[Long.numberOfTrailingZeros(mask)];
+				boolean sameRow = true, sameColumn = true, sameBlock = true;
+				for (long bits = mask; bits != 0; bits &= bits - 1)
+				{
+					Variable v = cells[Long.numberOfTrailingZeros(bits)];
+					sameRow &= v.row() == first.row();
+					sameColumn &= v.col() == first.col();
+					sameBlock &= v.block() == first.block();
+				}
+				
+				if (kind == SudokuUnits.BLOCK)
+				{
+					if (sameRow && !removeOutside(units, units.getRowUnit(first.row()), first, kind, value))
+					{
+						return false;
+					}
+					if (sameColumn && !removeOutside(units, units.getColumnUnit(first.col()), first, kind, value))
+					{
+						return false;
+					}
+				}
+				else if (sameBlock && !removeOutside(units, units.getBlockUnit(first.block()), first, kind, value))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes <tt>value</tt> from the variables of unit <tt>target</tt> that are 
+	 * not in the unit of kind <tt>kind</tt> containing <tt>inside</tt>. 
+	 * @return false if a domain was left empty
+	 */
+	private boolean removeOutside(SudokuUnits units, int target, Variable inside, int kind, int value)
+	{
+		if (target < 0)
+		{
+			return true;
+		}
+		for (Variable v : units.getCells(target))
+		{
+			boolean shared;
+			switch(kind)
+			{
+			case SudokuUnits.ROW:		shared = v.row() == inside.row();
+			break;
+			case SudokuUnits.COLUMN:	shared = v.col() == inside.col();
+			break;
+			default:					shared = v.block() == inside.block();
+			break;
+			}
+			if (!shared && !units.remove(v, value))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
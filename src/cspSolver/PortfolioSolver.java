@@ -0,0 +1,244 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sudoku.SudokuFile;
+
+/**
+ * Runs several solvers on the same puzzle at the same time, each on its own
+ * thread. The first one to finish with an answer, a solution or a proof that
+ * there is none, wins and the others are cancelled.
+ *
+ * The statistics and times reported are the winner's. If no solver wins, the
+ * times are the portfolio's own and the counts are summed over all solvers.
+ */
+public class PortfolioSolver implements Solver {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final SudokuFile sudokuGrid;
+	private final List<Solver> solvers = new ArrayList<Solver>();
+	private final List<String> names = new ArrayList<String>();
+	private int winner = -1;
+	private volatile boolean cancelled;
+
+	private long startTime;
+	private long endTime;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param sf the puzzle, returned as the solution if no solver finds one
+	 */
+	public PortfolioSolver(SudokuFile sf)
+	{
+		this.sudokuGrid = sf;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Adds a solver to the portfolio. It must have been made for the same puzzle
+	 * and must not be shared with another portfolio.
+	 * @param name describes the configuration, reported if it wins
+	 * @param solver the solver
+	 */
+	public void add(String name, Solver solver)
+	{
+		names.add(name);
+		solvers.add(solver);
+	}
+
+	public void cancel()
+	{
+		cancelled = true;
+		for (Solver solver : solvers)
+		{
+			solver.cancel();
+		}
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return name of the winning solver, null if none has won
+	 */
+	public synchronized String getWinnerName()
+	{
+		return winner < 0 ? null : names.get(winner);
+	}
+
+	/**
+	 * @return the winning solver, null if none has won
+	 */
+	public synchronized Solver getWinner()
+	{
+		return winner < 0 ? null : solvers.get(winner);
+	}
+
+	public boolean hasSolution()
+	{
+		Solver w = getWinner();
+		return w != null && w.hasSolution();
+	}
+
+	public SudokuFile getSolution()
+	{
+		Solver w = getWinner();
+		return w == null ? sudokuGrid : w.getSolution();
+	}
+
+	/**
+	 * @return the winner's status. Without a winner, "cancelled" if the
+	 * portfolio was cancelled and "timeout" otherwise.
+	 */
+	public String getStatus()
+	{
+		Solver w = getWinner();
+		if (w != null)
+		{
+			return w.getStatus();
+		}
+		return cancelled || solvers.isEmpty() ? "cancelled" : "timeout";
+	}
+
+	public int getNumAssignments()
+	{
+		Solver w = getWinner();
+		if (w != null)
+		{
+			return w.getNumAssignments();
+		}
+		int total = 0;
+		for (Solver solver : solvers)
+		{
+			total += solver.getNumAssignments();
+		}
+		return total;
+	}
+
+	public int getNumBacktracks()
+	{
+		Solver w = getWinner();
+		if (w != null)
+		{
+			return w.getNumBacktracks();
+		}
+		int total = 0;
+		for (Solver solver : solvers)
+		{
+			total += solver.getNumBacktracks();
+		}
+		return total;
+	}
+
+	public long getStartTime()
+	{
+		Solver w = getWinner();
+		return w == null ? startTime : w.getStartTime();
+	}
+
+	public long getEndTime()
+	{
+		Solver w = getWinner();
+		return w == null ? endTime : w.getEndTime();
+	}
+
+	public long getTimeTaken()
+	{
+		Solver w = getWinner();
+		return w == null ? endTime - startTime : w.getTimeTaken();
+	}
+
+	public long getACPreStartTime()
+	{
+		Solver w = getWinner();
+		return w == null ? startTime : w.getACPreStartTime();
+	}
+
+	public long getACPreEndTime()
+	{
+		Solver w = getWinner();
+		return w == null ? startTime : w.getACPreEndTime();
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Called by a solver's thread once it is done. Timeouts and cancellations
+	 * do not count as an answer.
+	 */
+	private synchronized void finished(int index)
+	{
+		String status = solvers.get(index).getStatus();
+		if (winner >= 0 || status.equals("timeout") || status.equals("cancelled"))
+		{
+			return;
+		}
+		winner = index;
+		for (int i = 0; i < solvers.size(); i++)
+		{
+			if (i != index)
+			{
+				solvers.get(i).cancel();
+			}
+		}
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * Starts every solver and waits until all of them have stopped.
+	 */
+	public void solve()
+	{
+		startTime = System.currentTimeMillis();
+		List<Thread> threads = new ArrayList<Thread>(solvers.size());
+		for (int i = 0; i < solvers.size(); i++)
+		{
+			final int index = i;
+			final Solver solver = solvers.get(i);
+			Thread t = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					solver.solve();
+					finished(index);
+				}
+			}, "portfolio-" + names.get(i));
+			threads.add(t);
+			t.start();
+		}
+
+		try
+		{
+			for (Thread t : threads)
+			{
+				t.join();
+			}
+		}catch(InterruptedException e)
+		{
+			cancel();
+			Thread.currentThread().interrupt();
+		}
+		endTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public void run() {
+		solve();
+	}
+}
@@ -0,0 +1,181 @@
+package cspSolver;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Queue of assigned variables whose value still has to be removed from their 
+ * neighbors. It is fed by domain change events: a variable is queued when its 
+ * domain is reduced to a single value. A bitset tells in constant time whether 
+ * a variable is already queued, so each variable is queued at most once. 
+ * 
+ * Variables are taken off the queue either first in first out, or in index 
+ * order. Every variable taken off is logged, so that backtracking can queue it 
+ * again once the trail has undone its propagation. 
+ */
+class PropagationQueue implements DomainListener {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+	
+	private final boolean indexOrder;
+	private final BitSet queued;
+	private final int[] fifo;			//ring buffer, unused in index order
+	private int head;
+	private int count;
+	
+	private int[] polled = new int[64];
+	private int numPolled;
+	
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+	
+	/**
+	 * @param numVariables number of variables in the network
+	 * @param indexOrder true to take variables off in index order, false for first 
+	 * in first out
+	 */
+	PropagationQueue(int numVariables, boolean indexOrder)
+	{
+		this.indexOrder = indexOrder;
+		this.queued = new BitSet(numVariables);
+		this.fifo = indexOrder ? null : new int[numVariables];
+	}
+	
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+	
+	public boolean isEmpty()
+	{
+		return queued.isEmpty();
+	}
+	
+	public boolean contains(int index)
+	{
+		return queued.get(index);
+	}
+	
+	/**
+	 * @return a mark to pass to undo, the current position in the log
+	 */
+	public int mark()
+	{
+		return numPolled;
+	}
+	
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+	
+	public void add(int index)
+	{
+		if (queued.get(index))
+		{
+			return;
+		}
+		queued.set(index);
+		if (!indexOrder)
+		{
+			fifo[(head + count) % fifo.length] = index;
+			count++;
+		}
+	}
+	
+	/**
+	 * Queues the variables queued in <tt>other</tt>, in the order they would be
+	 * taken off it. <tt>other</tt> is not changed.
+	 */
+	public void addAll(PropagationQueue other)
+	{
+		if (other.indexOrder)
+		{
+			for (int i = other.queued.nextSetBit(0); i >= 0; i = other.queued.nextSetBit(i + 1))
+			{
+				add(i);
+			}
+			return;
+		}
+		for (int k = 0; k < other.count; k++)
+		{
+			add(other.fifo[(other.head + k) % other.fifo.length]);
+		}
+	}
+
+	/**
+	 * @return index of the next variable, -1 if the queue is empty
+	 */
+	public int poll()
+	{
+		if (indexOrder)
+		{
+			return pollFrom(0);
+		}
+		if (count == 0)
+		{
+			return -1;
+		}
+		int index = fifo[head];
+		head = (head + 1) % fifo.length;
+		count--;
+		queued.clear(index);
+		log(index);
+		return index;
+	}
+	
+	/**
+	 * Only for queues in index order.
+	 * @param from lowest index to look at
+	 * @return lowest queued index not below <tt>from</tt>, -1 if there is none
+	 */
+	public int pollFrom(int from)
+	{
+		if (!indexOrder)
+		{
+			throw new IllegalStateException("Queue is not in index order");
+		}
+		int index = queued.nextSetBit(from);
+		if (index >= 0)
+		{
+			queued.clear(index);
+			log(index);
+		}
+		return index;
+	}
+	
+	/**
+	 * Queues again the variables taken off since <tt>mark</tt> was obtained. 
+	 * @param mark value returned by mark()
+	 */
+	public void undo(int mark)
+	{
+		while (numPolled > mark)
+		{
+			add(polled[--numPolled]);
+		}
+	}
+	
+	private void log(int index)
+	{
+		if (numPolled == polled.length)
+		{
+			polled = Arrays.copyOf(polled, numPolled * 2);
+		}
+		polled[numPolled++] = index;
+	}
+	
+	//===============================================================================
+	// DomainListener
+	//===============================================================================
+	
+	@Override
+	public void domainChanged(Variable v, int oldSize)
+	{
+		if (oldSize != 1 && v.isAssigned())
+		{
+			add(v.getIndex());
+		}
+	}
+}
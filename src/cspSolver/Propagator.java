@@ -0,0 +1,19 @@
+package cspSolver;
+
+/**
+ * A deduction rule run by BTSolver before branching, after the consistency 
+ * check. The solver runs its propagators and the consistency check in turn 
+ * until none of them removes a value. 
+ * @see BTSolver#addPropagator(Propagator)
+ */
+public interface Propagator {
+	
+	/**
+	 * Applies the rule once to every unit. Values must be removed through 
+	 * <tt>units</tt> so that the solver can tell whether anything changed. 
+	 * @param units rows, columns and blocks of the puzzle, with the positions 
+	 * where each value can still go
+	 * @return false if the rule found a contradiction, true otherwise
+	 */
+	public boolean propagate(SudokuUnits units);
+}
@@ -0,0 +1,92 @@
+package cspSolver;
+
+import java.util.Arrays;
+
+/**
+ * Counts the solutions found by a search, up to a limit, and keeps the time 
+ * the first MAX_TIMES and the last solution were found at. Shared by all the 
+ * solvers of a parallel search. 
+ */
+class SolutionCounter {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+	
+	public static final int MAX_TIMES = 1024;
+	
+	private final int limit;
+	private int count;
+	private long[] times = new long[4];
+	private long lastTime;
+	
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+	
+	/**
+	 * @param limit number of solutions after which the search stops, 0 for no limit
+	 */
+	SolutionCounter(int limit)
+	{
+		this.limit = limit;
+	}
+	
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+	
+	public synchronized int getCount()
+	{
+		return count;
+	}
+	
+	public synchronized boolean isLimitReached()
+	{
+		return limit > 0 && count >= limit;
+	}
+	
+	/**
+	 * @param k a solution, from 1 to MAX_TIMES, or the last one
+	 * @return time the k-th solution was found at
+	 */
+	public synchronized long getTime(int k)
+	{
+		if (k == count && k > 0)
+		{
+			return lastTime;
+		}
+		if (k < 1 || k > Math.min(count, MAX_TIMES))
+		{
+			throw new IndexOutOfBoundsException("No time kept for solution " + k + " of " + count);
+		}
+		return times[k - 1];
+	}
+	
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+	
+	/**
+	 * Counts a solution, unless the limit was already reached. 
+	 * @param time time the solution was found at
+	 * @return the number of the solution, from 1, or 0 if it was not counted
+	 */
+	public synchronized int add(long time)
+	{
+		if (isLimitReached())
+		{
+			return 0;
+		}
+		if (count < MAX_TIMES)
+		{
+			if (count == times.length)
+			{
+				times = Arrays.copyOf(times, count * 2);
+			}
+			times[count] = time;
+		}
+		lastTime = time;
+		return ++count;
+	}
+}
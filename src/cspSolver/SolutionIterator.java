@@ -0,0 +1,187 @@
+package cspSolver;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+
+import sudoku.SudokuFile;
+
+/**
+ * Enumerates the solutions of a puzzle one at a time, as they are pulled. 
+ * The search of a configured BTSolver runs on its own thread and is suspended 
+ * in its SolutionListener after each solution until the next one is asked 
+ * for, so only the search's own state is held in memory, however many 
+ * solutions there are. 
+ *
+ * Stopping early is done by calling close, which cancels the search. An 
+ * iterator is meant to be used by a single thread. 
+ */
+public class SolutionIterator implements Iterator<SudokuFile>, Closeable {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private static final SudokuFile END = new SudokuFile(1, 1, 1);		//marks the end of the search
+
+	private final BTSolver solver;
+	private final SynchronousQueue<SudokuFile> handoff = new SynchronousQueue<SudokuFile>();
+	private final Semaphore demand = new Semaphore(0);
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile RuntimeException failure;
+
+	private SudokuFile next;
+	private boolean done;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param solver a solver with its heuristics and checks set, not yet started. 
+	 * Its solution limit is set to 0 and its solution listener is replaced. 
+	 * Its time limit still applies, not counting the time between pulls. 
+	 */
+	public SolutionIterator(BTSolver solver)
+	{
+		this.solver = solver;
+		solver.setSolutionLimit(0);
+		solver.setSolutionListener(new SolutionListener() {
+
+			@Override
+			public void solutionFound(SudokuFile solution) {
+				hand(solution);
+			}
+		});
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return the solver, whose statistics are complete once hasNext returned false
+	 */
+	public BTSolver getSolver()
+	{
+		return solver;
+	}
+
+	//===============================================================================
+	// Iterator
+	//===============================================================================
+
+	/**
+	 * Resumes the search until it finds another solution or ends. 
+	 * @throws IllegalStateException if the search failed, or the thread was 
+	 * interrupted while waiting
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		if (next != null)
+		{
+			return true;
+		}
+		if (done || closed)
+		{
+			return false;
+		}
+		if (thread == null)
+		{
+			start();
+		}
+		demand.release();
+		try {
+			next = handoff.take();
+		}catch (InterruptedException e)
+		{
+			close();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a solution", e);
+		}
+		if (next == END)
+		{
+			next = null;
+			done = true;
+			if (failure != null)
+			{
+				throw new IllegalStateException(failure);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public SudokuFile next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		SudokuFile sf = next;
+		next = null;
+		return sf;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Cancels the search and lets its thread end. 
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		solver.cancel();
+		if (thread != null)
+		{
+			thread.interrupt();
+		}
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private void start()
+	{
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					solver.solve();
+				}catch (RuntimeException e)
+				{
+					failure = e;
+				}
+				hand(END);
+			}
+		}, "solutions");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Called on the search thread: waits for a pull, then passes on a solution. 
+	 * Cancels the search if the iterator was closed meanwhile. 
+	 */
+	private void hand(SudokuFile sf)
+	{
+		try {
+			demand.acquire();
+			handoff.put(sf);
+		}catch (InterruptedException e)
+		{
+			solver.cancel();
+		}
+	}
+}
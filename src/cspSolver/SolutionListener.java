@@ -0,0 +1,16 @@
+package cspSolver;
+
+import sudoku.SudokuFile;
+
+/**
+ * Receives each solution found by a BTSolver, as soon as it is found. 
+ * @see BTSolver#setSolutionListener(SolutionListener)
+ */
+public interface SolutionListener {
+	
+	/**
+	 * Called on the search thread; the search waits until it returns. 
+	 * @param solution a copy of the solution, in the layout of getSolution
+	 */
+	public void solutionFound(SudokuFile solution);
+}
@@ -0,0 +1,55 @@
+package cspSolver;
+
+import sudoku.SudokuFile;
+
+/**
+ * A sudoku solving engine. Gives the results and statistics read by 
+ * SudokuBoardWriter and the experiment drivers. Times are in milliseconds, 
+ * as returned by System.currentTimeMillis(). 
+ */
+public interface Solver extends Runnable {
+	
+	/**
+	 * Solves the puzzle, or gives up once the time limit is exceeded. 
+	 */
+	public void solve();
+	
+	/** 
+	 * @return true if a solution has been found, false otherwise. 
+	 */
+	public boolean hasSolution();
+	
+	/**
+	 * @return solution if a solution has been found, otherwise returns the unsolved puzzle.
+	 */
+	public SudokuFile getSolution();
+	
+	/**
+	 * Asks the solver to stop. The search notices it at its next node and ends 
+	 * with the status "cancelled". Can be called from any thread. 
+	 */
+	public void cancel();
+	
+	/**
+	 * @return "success", "timeout", "cancelled" or "error" if the search ended 
+	 * without a solution
+	 */
+	public String getStatus();
+	
+	public int getNumAssignments();
+	
+	public int getNumBacktracks();
+	
+	public long getStartTime();
+	
+	public long getEndTime();
+	
+	/**
+	 * @return time spent preprocessing and searching
+	 */
+	public long getTimeTaken();
+	
+	public long getACPreStartTime();
+	
+	public long getACPreEndTime();
+}
@@ -0,0 +1,220 @@
+package cspSolver;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The units of a sudoku, i.e. the rows, columns and blocks built as constraints
+ * by Converter.SudokuFileToConstraintNetwork, as seen by the deduction rules. 
+ * 
+ * For every unit and value, a bitmask holds the positions in the unit whose 
+ * domain contains the value: bit p is set if the p-th variable of the unit can 
+ * take the value. The masks are computed by refresh() and are not updated when 
+ * values are removed afterwards, so they may list a position that is no longer 
+ * possible but never miss one. Rules must only draw conclusions that stay true 
+ * under that over-approximation. 
+ * 
+ * A unit of n variables is assumed to hold each value from 1 to n exactly once.
+ * Units of more than 64 variables are left out. 
+ */
+public class SudokuUnits {
+	
+	//===============================================================================
+	// Properties
+	//===============================================================================
+	
+	public static final int OTHER = 0;
+	public static final int ROW = 1;
+	public static final int COLUMN = 2;
+	public static final int BLOCK = 3;
+	
+	private final Variable[][] cells;
+	private final int[] kinds;
+	private final int[] rowUnits;
+	private final int[] columnUnits;
+	private final int[] blockUnits;
+	private final int maxValue;
+	
+	private final long[] positions;		//[unit * (maxValue + 1) + value]
+	private long numChanges;
+	
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+	
+	public SudokuUnits(ConstraintNetwork network)
+	{
+		List<Constraint> constraints = network.getConstraints();
+		Variable[][] cells = new Variable[constraints.size()][];
+		int numUnits = 0;
+		int maxValue = 0;
+		int maxCoordinate = 0;
+		for (Constraint c : constraints)
+		{
+			if (c.size() == 0 || c.size() > 64)
+			{
+				continue;
+			}
+			cells[numUnits++] = c.vars.toArray(new Variable[c.size()]);
+			maxValue = Math.max(maxValue, c.size());
+			for (Variable v : c.vars)
+			{
+				maxCoordinate = Math.max(maxCoordinate, Math.max(v.block(), Math.max(v.row(), v.col())));
+			}
+		}
+		this.cells = Arrays.copyOf(cells, numUnits);
+		this.maxValue = maxValue;
+		this.kinds = new int[numUnits];
+		this.rowUnits = new int[maxCoordinate + 1];
+		this.columnUnits = new int[maxCoordinate + 1];
+		this.blockUnits = new int[maxCoordinate + 1];
+		Arrays.fill(rowUnits, -1);
+		Arrays.fill(columnUnits, -1);
+		Arrays.fill(blockUnits, -1);
+		
+		for (int u = 0; u < numUnits; u++)
+		{
+			Variable first = this.cells[u][0];
+			boolean sameRow = true, sameColumn = true, sameBlock = true;
+			for (Variable v : this.cells[u])
+			{
+				sameRow &= v.row() == first.row();
+				sameColumn &= v.col() == first.col();
+				sameBlock &= v.block() == first.block();
+			}
+			if (sameRow)
+			{
+				kinds[u] = ROW;
+				rowUnits[first.row()] = u;
+			}
+			else if (sameColumn)
+			{
+				kinds[u] = COLUMN;
+				columnUnits[first.col()] = u;
+			}
+			else if (sameBlock)
+			{
+				kinds[u] = BLOCK;
+				blockUnits[first.block()] = u;
+			}
+		}
+		this.positions = new long[numUnits * (maxValue + 1)];
+	}
+	
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+	
+	public int size()
+	{
+		return cells.length;
+	}
+	
+	/**
+	 * @param unit index of a unit
+	 * @return variables of the unit. The array is shared and must not be modified. 
+	 */
+	public Variable[] getCells(int unit)
+	{
+		return cells[unit];
+	}
+	
+	/**
+	 * @return ROW, COLUMN, BLOCK or OTHER
+	 */
+	public int getKind(int unit)
+	{
+		return kinds[unit];
+	}
+	
+	/**
+	 * @return index of the unit of row <tt>row</tt>, -1 if there is none
+	 */
+	public int getRowUnit(int row)
+	{
+		return row < rowUnits.length ? rowUnits[row] : -1;
+	}
+	
+	/**
+	 * @return index of the unit of column <tt>col</tt>, -1 if there is none
+	 */
+	public int getColumnUnit(int col)
+	{
+		return col < columnUnits.length ? columnUnits[col] : -1;
+	}
+	
+	/**
+	 * @return index of the unit of block <tt>block</tt>, -1 if there is none
+	 */
+	public int getBlockUnit(int block)
+	{
+		return block < blockUnits.length ? blockUnits[block] : -1;
+	}
+	
+	/**
+	 * @param unit index of a unit
+	 * @param value a value between 1 and the size of the unit
+	 * @return positions in the unit where <tt>value</tt> could go as of the last refresh
+	 */
+	public long getPositions(int unit, int value)
+	{
+		return positions[unit * (maxValue + 1) + value];
+	}
+	
+	/**
+	 * @return number of domain changes made through this object, used to tell 
+	 * whether a rule changed anything
+	 */
+	public long getNumChanges()
+	{
+		return numChanges;
+	}
+	
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+	
+	/**
+	 * Recomputes the positions of every value in every unit from the domains. 
+	 */
+	public void refresh()
+	{
+		Arrays.fill(positions, 0L);
+		for (int u = 0; u < cells.length; u++)
+		{
+			int base = u * (maxValue + 1);
+			Variable[] unit = cells[u];
+			for (int p = 0; p < unit.length; p++)
+			{
+				Domain d = unit[p].getDomain();
+				for (int value = d.min(); value != 0 && value <= maxValue; value = d.nextValue(value))
+				{
+					positions[base + value] |= 1L << p;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes a value from the domain of a variable, through the Trail. 
+	 * @return false if the domain is left empty, true otherwise
+	 */
+	public boolean remove(Variable v, int value)
+	{
+		if (v.getDomain().contains(value))
+		{
+			v.removeValueFromDomain(value);
+			numChanges++;
+		}
+		return !v.getDomain().isEmpty();
+	}
+	
+	/**
+	 * Reduces the domain of a variable to a single value, through the Trail. 
+	 */
+	public void assign(Variable v, int value)
+	{
+		v.assign(value);
+		numChanges++;
+	}
+}
@@ -1,83 +1,141 @@
 package cspSolver;
 
+import java.util.Arrays;
 import java.util.EmptyStackException;
-import java.util.Stack;
+import java.util.List;
 
 /**
- * Represents the trail of changes made. This allows backtracking to occur. 
- * Trail follows the singleton design pattern. 
+ * Represents the trail of changes made. This allows backtracking to occur.
+ * Each solver owns its own Trail.
+ *
+ * Entries are kept in parallel primitive arrays: the index of the variable and
+ * the bits of its domain before the change. A variable is pushed at most once
+ * between two breadcrumbs, since only its oldest domain at that level is needed
+ * to undo the level.
  */
 public class Trail {
-	
+
 	//===============================================================================
 	// Properties
 	//===============================================================================
-	
-	private static Stack<Object[]> trail = new Stack<Object[]>();
-	private static final Trail TRAIL = new Trail();
-	private static Stack<Integer> breadcrumbs = new Stack<Integer>();
-	private Trail()
-	{}
-	
+
+	private final Variable[] variables;
+	private final int stride;			//longs stored per domain
+
+	private int[] vars = new int[64];
+	private long[] bits;
+	private int size;
+
+	private int[] breadcrumbs = new int[64];
+	private int[] breadcrumbStamps = new int[64];
+	private int numBreadcrumbs;
+
+	private final int[] lastPushed;		//stamp of the level each variable was last pushed at
+	private int stamp = 1;
+	private int nextStamp = 2;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
 	/**
-	 * returns the trail.
-	 * @return
+	 * Creates a trail over the variables of a network and attaches it to them.
+	 * @param variables variables of the network, in index order
 	 */
-	public static Trail getTrail()
+	public Trail(List<Variable> variables)
 	{
-		return TRAIL;
+		this.variables = variables.toArray(new Variable[variables.size()]);
+		int stride = 1;
+		for (Variable v : this.variables)
+		{
+			stride = Math.max(stride, v.getDomain().wordCount());
+			v.setTrail(this);
+		}
+		this.stride = stride;
+		this.bits = new long[vars.length * stride];
+		this.lastPushed = new int[this.variables.length];
 	}
-	
-	public static void clearTrail()
+
+	public void clear()
 	{
-		trail.clear();
+		size = 0;
+		numBreadcrumbs = 0;
+		stamp = nextStamp++;
 	}
+
 	//===============================================================================
 	// Accessors
 	//===============================================================================
-	
+
 	public int size()
 	{
-		return trail.size();
+		return size;
 	}
-	
+
 	//===============================================================================
 	// Modifiers
 	//===============================================================================
-	
+
 	/**
-	 * places a marker at the current point in the trail. Each time undo is called, the 
-	 * latest marker is popped and the trail 
+	 * places a marker at the current point in the trail. Each time undo is called, the
+	 * latest marker is popped and the trail is restored to that point.
 	 */
 	public void placeBreadCrumb()
 	{
-		breadcrumbs.add(trail.size());
+		if (numBreadcrumbs == breadcrumbs.length)
+		{
+			breadcrumbs = Arrays.copyOf(breadcrumbs, numBreadcrumbs * 2);
+			breadcrumbStamps = Arrays.copyOf(breadcrumbStamps, numBreadcrumbs * 2);
+		}
+		breadcrumbs[numBreadcrumbs] = size;
+		breadcrumbStamps[numBreadcrumbs] = stamp;
+		numBreadcrumbs++;
+		stamp = nextStamp++;
 	}
+
 	/**
-	 * Adds a deep copy of a variable and its domain onto the trail.
-	 * @param v Variable to copy onto the trail
+	 * Records the domain of a variable before it is changed. Does nothing if the
+	 * variable was already recorded since the latest marker, or if there is no
+	 * marker to undo to.
+	 * @param v Variable whose domain is about to change
 	 */
 	public void push(Variable v)
 	{
-		Object[] vPair = { v, new Domain(v.getDomain())};
-		trail.push(vPair);
+		int index = v.getIndex();
+		if (numBreadcrumbs == 0 || lastPushed[index] == stamp)
+		{
+			return;
+		}
+		lastPushed[index] = stamp;
+
+		if (size == vars.length)
+		{
+			vars = Arrays.copyOf(vars, size * 2);
+			bits = Arrays.copyOf(bits, size * 2 * stride);
+		}
+		vars[size] = index;
+		v.getDomain().copyBitsTo(bits, size * stride, stride);
+		size++;
 	}
-	
+
 	/**
-	 * Pops changes pushed onto the trail until it reaches the latest marker. 
-	 * Also pops the latest marker. 
-	 * @param targetSize target position on the trail to backtrack to
-	 * @throws EmptyStackException if trail is empty
+	 * Pops changes pushed onto the trail until it reaches the latest marker.
+	 * Also pops the latest marker.
+	 * @throws EmptyStackException if no marker has been placed
 	 */
-	public void undo() throws EmptyStackException 
+	public void undo() throws EmptyStackException
 	{
-		int targetSize = breadcrumbs.pop();
-		for (int size = trail.size(); size > targetSize; size--)
+		if (numBreadcrumbs == 0)
 		{
-			Object[] vPair = trail.pop();
-			Variable v = (Variable) vPair[0];
-			v.setDomain((Domain) vPair[1]);
+			throw new EmptyStackException();
+		}
+		numBreadcrumbs--;
+		int targetSize = breadcrumbs[numBreadcrumbs];
+		stamp = breadcrumbStamps[numBreadcrumbs];
+		while (size > targetSize)
+		{
+			size--;
+			variables[vars[size]].restoreDomain(bits, size * stride, stride);
 		}
 	}
 }
-
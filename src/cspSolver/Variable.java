@@ -9,15 +9,15 @@ public class Variable implements Iterable<Integer>
 	// Properties
 	//===============================================================================
 	
-	private static int namingCounter = 1;
 	private Domain domain;	
 	private int row, col, block;
 	private boolean modified;
 	private boolean unchangeable;
-	private String name;
-	private static Trail trail = Trail.getTrail();
+	private int index;
+	private Trail trail;
+	private DomainListener listener;
 	
-	private int oldSize;
+	private int oldSize;		//size of the domain before the current change
 	
 	//===============================================================================
 	// Constructors
@@ -25,7 +25,15 @@ public class Variable implements Iterable<Integer>
 	
 	public Variable(List<Integer> possible_Values, int row, int col, int block)
 	{	
-		this.domain = new Domain(possible_Values);
+		this(new Domain(possible_Values), row, col, block);
+	}
+	
+	/**
+	 * @param domain initial values of the variable, owned by the variable from now on
+	 */
+	public Variable(Domain domain, int row, int col, int block)
+	{
+		this.domain = domain;
 		if (size() == 1)
 		{
 			modified = true;
@@ -34,7 +42,6 @@ public class Variable implements Iterable<Integer>
 		this.row = row;
 		this.col = col;
 		this.block = block;
-		this.name = "v" + namingCounter++;
 		this.oldSize = size();
 	}
 	
@@ -45,7 +52,7 @@ public class Variable implements Iterable<Integer>
 		this.col = v.col;
 		this.block = v.block;
 		this.modified = v.modified;
-		this.name = v.name;
+		this.index = v.index;
 	}
 	
 	//===============================================================================
@@ -106,7 +113,7 @@ public class Variable implements Iterable<Integer>
 		}
 		else
 		{
-			return domain.getValues().get(0);
+			return domain.min();
 		}
 	}
 	
@@ -125,9 +132,38 @@ public class Variable implements Iterable<Integer>
 		return domain;
 	}
 	
+	/**
+	 * @return v1 to vn, after the position of the variable in its ConstraintNetwork
+	 */
 	public String getName()
 	{
-		return name;
+		return "v" + (index + 1);
+	}
+	
+	/**
+	 * @return position of the variable in its ConstraintNetwork
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+	
+	void setIndex(int index)
+	{
+		this.index = index;
+	}
+	
+	void setTrail(Trail trail)
+	{
+		this.trail = trail;
+	}
+	
+	/**
+	 * @param listener object notified after each change to the domain, null for none
+	 */
+	public void setDomainListener(DomainListener listener)
+	{
+		this.listener = listener;
 	}
 	
 	//===============================================================================
@@ -143,6 +179,19 @@ public class Variable implements Iterable<Integer>
 		setDomain(new Domain(val));
 	}
 	
+	/**
+	 * Used for Backtracking. Reduces the domain to val, adding the old
+	 * domain to the Trail.
+	 * @param val new assignment
+	 */
+	public void assign(int val)
+	{
+		methodModifiesDomain();
+		domain.retainOnly(val);
+		modified = true;
+		domainChanged();
+	}
+	
 	/**
 	 * Used for Backtracking. Adds the changed domain to the Trail.
 	 * @param d new domain
@@ -155,6 +204,7 @@ public class Variable implements Iterable<Integer>
 		{
 			domain = d;
 			modified = true;
+			domainChanged();
 		}
 	}
 	
@@ -166,8 +216,10 @@ public class Variable implements Iterable<Integer>
 	{
 		if(!domain.equals(d))
 		{
+			oldSize = size();
 			domain = d;
 			modified = true;
+			domainChanged();
 		}
 	}
 	
@@ -176,24 +228,50 @@ public class Variable implements Iterable<Integer>
 	 * @param val value to remove
 	 */
 	public void removeValueFromDomain(int val) {
+		if (!domain.contains(val))
+		{
+			return;
+		}
 		methodModifiesDomain();
 		domain.remove(val);
 		this.modified=domain.isModified();
+		domainChanged();
+	}
+	
+	/**
+	 * Used by the Trail to put back a domain recorded before a change.
+	 */
+	void restoreDomain(long[] bits, int offset, int count)
+	{
+		oldSize = size();
+		domain.copyBitsFrom(bits, offset, count);
+		modified = true;
+		domainChanged();
 	}
 	
 	//===============================================================================
 	// Helper Methods
 	//===============================================================================
 	
+	/**
+	 * Called before the domain is changed. Adds the domain to the Trail and 
+	 * keeps its size for the DomainListener.
+	 */
 	public void methodModifiesDomain()
 	{
-		int newSize = size();
-		if (oldSize > newSize)
+		oldSize = size();
+		if (trail != null)
+		{
+			trail.push(this);
+		}
+	}
+	
+	private void domainChanged()
+	{
+		if (listener != null)
 		{
-			oldSize = newSize;
+			listener.domainChanged(this, oldSize);
 		}
-			
-		trail.push(this);
 	}
 	
 	//===============================================================================
@@ -212,7 +290,7 @@ public class Variable implements Iterable<Integer>
 	{
 		//prints node stats
 		StringBuilder sb = new StringBuilder();
-		sb.append(" Name: "+name);
+		sb.append(" Name: "+getName());
 		sb.append("\tdomain: {");
 		for(Integer i : domain)
 		{
@@ -0,0 +1,212 @@
+package cspSolver;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the unassigned variables of a network used by the variable selection
+ * heuristics. Unassigned variables are kept in buckets by domain size, and if 
+ * asked for, the number of unassigned neighbors of every variable is counted. 
+ * Both are updated 
+ * from domain change events, including the ones of the Trail when backtracking, 
+ * so a variable can be selected without scanning the whole network. 
+ * 
+ * Ties are broken the same way as a scan of the network would: the variable 
+ * with the lowest index wins. 
+ */
+class VariableSelectionIndex implements DomainListener {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+	
+	private final ConstraintNetwork network;
+	private final List<Variable> variables;
+	private final int numWords;
+	private final boolean countNeighbors;
+	
+	private long[][] buckets;			//bitset of the unassigned variables of each domain size
+	private int[] bucketSizes;
+	private final int[] unassignedNeighbors;
+	
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+	
+	/**
+	 * @param network network whose variables are indexed
+	 * @param countNeighbors whether to count unassigned neighbors, needed by 
+	 * getDegree and getMRVDH
+	 */
+	VariableSelectionIndex(ConstraintNetwork network, boolean countNeighbors)
+	{
+		this.network = network;
+		this.countNeighbors = countNeighbors;
+		this.variables = network.getVariables();
+		this.numWords = (variables.size() + 63) >>> 6;
+		
+		int maxSize = 1;
+		for (Variable v : variables)
+		{
+			maxSize = Math.max(maxSize, v.size());
+		}
+		buckets = new long[maxSize + 1][numWords];
+		bucketSizes = new int[maxSize + 1];
+		unassignedNeighbors = new int[variables.size()];
+		
+		for (Variable v : variables)
+		{
+			if (!v.isAssigned())
+			{
+				addToBucket(v.getIndex(), v.size());
+				if (countNeighbors)
+				{
+					for (int j : network.getNeighborIndices(v.getIndex()))
+					{
+						unassignedNeighbors[j]++;
+					}
+				}
+			}
+		}
+	}
+	
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+	
+	/**
+	 * @return unassigned variable with the smallest domain, null if every variable is assigned
+	 */
+	public Variable getMRV()
+	{
+		for (int size = 0; size < bucketSizes.length; size++)
+		{
+			if (bucketSizes[size] > 0)
+			{
+				long[] bucket = buckets[size];
+				for (int w = 0; ; w++)
+				{
+					if (bucket[w] != 0)
+					{
+						return variables.get((w << 6) + Long.numberOfTrailingZeros(bucket[w]));
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return among the unassigned variables with the smallest domain, the one with 
+	 * the most unassigned neighbors. null if every variable is assigned
+	 */
+	public Variable getMRVDH()
+	{
+		for (int size = 0; size < bucketSizes.length; size++)
+		{
+			if (bucketSizes[size] > 0)
+			{
+				long[] bucket = buckets[size];
+				int best = -1;
+				for (int w = 0; w < numWords; w++)
+				{
+					for (long bits = bucket[w]; bits != 0; bits &= bits - 1)
+					{
+						int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+						if (best < 0 || unassignedNeighbors[i] > unassignedNeighbors[best])
+						{
+							best = i;
+						}
+					}
+				}
+				return variables.get(best);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return unassigned variable with the most unassigned neighbors, null if every 
+	 * variable is assigned
+	 */
+	public Variable getDegree()
+	{
+		int best = -1;
+		for (int i = 0; i < unassignedNeighbors.length; i++)
+		{
+			if (!variables.get(i).isAssigned() 
+					&& (best < 0 || unassignedNeighbors[i] > unassignedNeighbors[best]))
+			{
+				best = i;
+			}
+		}
+		return best < 0 ? null : variables.get(best);
+	}
+	
+	/**
+	 * @param index index of a variable
+	 * @return number of unassigned neighbors of the variable
+	 */
+	public int getUnassignedNeighbors(int index)
+	{
+		return unassignedNeighbors[index];
+	}
+	
+	//===============================================================================
+	// DomainListener
+	//===============================================================================
+	
+	@Override
+	public void domainChanged(Variable v, int oldSize)
+	{
+		int size = v.size();
+		if (size == oldSize)
+		{
+			return;
+		}
+		int i = v.getIndex();
+		if (oldSize != 1)
+		{
+			removeFromBucket(i, oldSize);
+		}
+		if (size != 1)
+		{
+			addToBucket(i, size);
+		}
+		if (countNeighbors && (oldSize == 1) != (size == 1))
+		{
+			int delta = size == 1 ? -1 : 1;
+			for (int j : network.getNeighborIndices(i))
+			{
+				unassignedNeighbors[j] += delta;
+			}
+		}
+	}
+	
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+	
+	private void addToBucket(int index, int size)
+	{
+		if (size >= buckets.length)
+		{
+			long[][] grown = new long[size + 1][];
+			System.arraycopy(buckets, 0, grown, 0, buckets.length);
+			for (int s = buckets.length; s <= size; s++)
+			{
+				grown[s] = new long[numWords];
+			}
+			buckets = grown;
+			bucketSizes = Arrays.copyOf(bucketSizes, size + 1);
+		}
+		buckets[size][index >>> 6] |= 1L << index;
+		bucketSizes[size]++;
+	}
+	
+	private void removeFromBucket(int index, int size)
+	{
+		buckets[size][index >>> 6] &= ~(1L << index);
+		bucketSizes[size]--;
+	}
+}
@@ -0,0 +1,91 @@
+package cspSolver;
+
+/**
+ * X-wing: if a value can only go in the same two columns in two rows, it takes
+ * those columns in those rows, so it is removed from the rest of both columns.
+ * The same holds with rows and columns swapped. 
+ */
+public class XWing implements Propagator {
+
+	@Override
+	public boolean propagate(SudokuUnits units)
+	{
+		return propagate(units, SudokuUnits.ROW) && propagate(units, SudokuUnits.COLUMN);
+	}
+	
+	/**
+	 * @param kind kind of the base lines, ROW or COLUMN. The other kind is cleared.
+	 */
+	private boolean propagate(SudokuUnits units, int kind)
+	{
+		for (int l1 = 0; l1 < units.size(); l1++)
+		{
+			if (units.getKind(l1) != kind)
+			{
+				continue;
+			}
+			Variable[] line1 = units.getCells(l1);
+			for (int value = 1; value <= line1.length; value++)
+			{
+				long cover = crossLines(units, l1, value, kind);
+				if (Long.bitCount(cover) != 2)
+				{
+					continue;
+				}
+				for (int l2 = l1 + 1; l2 < units.size(); l2++)
+				{
+					if (units.getKind(l2) != kind || crossLines(units, l2, value, kind) != cover)
+					{
+						continue;
+					}
+					int base1 = coordinate(line1[0], kind);
+					int base2 = coordinate(units.getCells(l2)[0], kind);
+					for (long bits = cover; bits != 0; bits &= bits - 1)
+					{
+						int cross = Long.numberOfTrailingZeros(bits);
+						int target = kind == SudokuUnits.ROW ? units.getColumnUnit(cross) : units.getRowUnit(cross);
+						if (target < 0)
+						{
+							continue;
+						}
+						for (Variable v : units.getCells(target))
+						{
+							int base = coordinate(v, kind);
+							if (base != base1 && base != base2 && !units.remove(v, value))
+							{
+								return false;
+							}
+						}
+					}
+					break;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return columns (for a row) or rows (for a column) where <tt>value</tt> could go in the line
+	 */
+	private long crossLines(SudokuUnits units, int line, int value, int kind)
+	{
+		Variable[] cells = units.getCells(line);
+		long cover = 0;
+		for (long bits = units.getPositions(line, value); bits != 0; bits &= bits - 1)
+		{
+			Variable v = cells[Long.numberOfTrailingZeros(bits)];
+			int cross = kind == SudokuUnits.ROW ? v.col() : v.row();
+			if (cross >= 64)
+			{
+				return 0;
+			}
+			cover |= 1L << cross;
+		}
+		return cover;
+	}
+	
+	private int coordinate(Variable v, int kind)
+	{
+		return kind == SudokuUnits.ROW ? v.row() : v.col();
+	}
+}
@@ -0,0 +1,296 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import cspSolver.BTSolver;
+import cspSolver.Solver;
+import sudoku.SudokuBoardWriter;
+import sudoku.SudokuCorpus;
+import sudoku.SudokuFile;
+import sudoku.SudokuStreamReader;
+
+/**
+ * Solves many puzzles in one JVM, on a fixed number of worker threads.
+ * Each solve runs directly on its worker, under the same per-puzzle time limit
+ * as a single solve. One result line is written per puzzle as soon as it
+ * finishes, so lines come in completion order, not input order.
+ */
+public class BatchSolver {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int workers;
+	private final int timelimit;
+	private final List<String> tokens;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param workers number of puzzles solved at the same time
+	 * @param timelimit time limit of each puzzle, in seconds
+	 * @param tokens solver options, as given to SudokuSolverMain
+	 */
+	public BatchSolver(int workers, int timelimit, List<String> tokens)
+	{
+		this.workers = workers;
+		this.timelimit = timelimit;
+		this.tokens = tokens;
+	}
+
+	//===============================================================================
+	// Puzzle lists
+	//===============================================================================
+
+	/**
+	 * @return true if <tt>source</tt> names several puzzles: a directory, a glob,
+	 * a list file starting with @, a binary SudokuCorpus, or a puzzle file that 
+	 * is not a single headered board, such as a Project Euler sudoku.txt
+	 */
+	public static boolean isBatch(String source)
+	{
+		return source.startsWith("@") || isGlob(source) || Files.isDirectory(Paths.get(source)) 
+				|| SudokuCorpus.isCorpus(source) || isPuzzleStream(source);
+	}
+
+	/**
+	 * Lists the puzzle files named by <tt>source</tt>:
+	 * <ul>
+	 * <li>a directory: every regular file in it</li>
+	 * <li>a glob such as ExampleSudokuFiles/PE*.txt: wildcards are allowed in the
+	 * file name only</li>
+	 * <li>@file: one path per line, blank lines and lines starting with # are skipped</li>
+	 * <li>any other file: that file</li>
+	 * </ul>
+	 * Directories and globs are listed in name order.
+	 */
+	public static List<String> listPuzzles(String source) throws IOException
+	{
+		List<String> paths = new ArrayList<String>();
+		if (source.startsWith("@"))
+		{
+			for (String line : Files.readAllLines(Paths.get(source.substring(1)), Charset.defaultCharset()))
+			{
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#"))
+				{
+					paths.add(line);
+				}
+			}
+			return paths;
+		}
+
+		Path dir = Paths.get(source);
+		if (Files.isRegularFile(dir))
+		{
+			paths.add(source);
+			return paths;
+		}
+		String glob = "*";
+		if (isGlob(source))
+		{
+			glob = dir.getFileName().toString();
+			dir = dir.getParent() == null ? Paths.get(".") : dir.getParent();
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob))
+		{
+			for (Path path : stream)
+			{
+				if (Files.isRegularFile(path))
+				{
+					paths.add(path.toString());
+				}
+			}
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+
+	/**
+	 * @return true if <tt>source</tt> is a file that SudokuBoardReader cannot read 
+	 * but SudokuStreamReader can: it holds several puzzles, or one puzzle in 
+	 * another format. A file the stream reader cannot read is left to 
+	 * SudokuBoardReader, which reports the error. At most two puzzles are read. 
+	 */
+	private static boolean isPuzzleStream(String source)
+	{
+		Path path = Paths.get(source);
+		if (!Files.isRegularFile(path))
+		{
+			return false;
+		}
+		try (BufferedReader br = Files.newBufferedReader(path, Charset.defaultCharset()))
+		{
+			String first = br.readLine();
+			if (first == null)
+			{
+				return false;
+			}
+			try (SudokuStreamReader reader = new SudokuStreamReader(source))
+			{
+				if (reader.read() == null)
+				{
+					return false;
+				}
+				return reader.read() != null || first.trim().split("\\s+").length != 3;
+			}
+		}catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+	private static boolean isGlob(String source)
+	{
+		for (char c : "*?[{".toCharArray())
+		{
+			if (source.indexOf(c) >= 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * Solves every puzzle of every file and writes a line per puzzle to <tt>out</tt>:
+	 * its name, status, solve time in seconds, nodes, dead ends and solution,
+	 * with the keys of SudokuBoardWriter. Files are read by a SudokuStreamReader, 
+	 * or as a SudokuCorpus if they are one, so they may hold many puzzles. A 
+	 * puzzle is named by the path of its file, followed by :k for the k-th 
+	 * puzzle if the file holds more than one. 
+	 * 
+	 * Files are read as the workers need puzzles, at most two puzzles per worker 
+	 * are waiting at any time. Returns once all puzzles are done. 
+	 */
+	public void solveAll(List<String> paths, PrintStream out) throws InterruptedException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		Semaphore waiting = new Semaphore(2 * workers);
+		for (String path : paths)
+		{
+			if (SudokuCorpus.isCorpus(path))
+			{
+				solveCorpus(path, pool, out, waiting);
+				continue;
+			}
+			try (SudokuStreamReader reader = new SudokuStreamReader(path))
+			{
+				SudokuFile sf = reader.read();
+				for (int k = 1; sf != null; k++)
+				{
+					SudokuFile following = reader.read();
+					String name = k == 1 && following == null ? path : path + ":" + k;
+					waiting.acquire();
+					pool.execute(new PuzzleTask(name, sf, out, waiting));
+					sf = following;
+				}
+			}catch (IOException e)
+			{
+				print(out, path + " STATUS=error " + e.getMessage());
+			}
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	private void solveCorpus(String path, ExecutorService pool, PrintStream out, Semaphore waiting) throws InterruptedException
+	{
+		try (SudokuCorpus corpus = new SudokuCorpus(path))
+		{
+			for (int i = 0; i < corpus.size(); i++)
+			{
+				String name = corpus.size() == 1 ? path : path + ":" + (i + 1);
+				waiting.acquire();
+				pool.execute(new PuzzleTask(name, corpus.get(i).toSudokuFile(), out, waiting));
+			}
+		}catch (IOException e)
+		{
+			print(out, path + " STATUS=error " + e.getMessage());
+		}
+	}
+
+	private String solve(String name, SudokuFile sf)
+	{
+		Solver solver = SudokuSolverMain.createSolver(sf, timelimit, tokens);
+		solver.solve();
+
+		StringBuilder sb = new StringBuilder(name);
+		sb.append(" STATUS=").append(solver.getStatus());
+		sb.append(" SOLUTION_TIME=").append(solver.getTimeTaken()/1000.0);
+		sb.append(" COUNT_NODES=").append(solver.getNumAssignments());
+		sb.append(" COUNT_DEADENDS=").append(solver.getNumBacktracks());
+		if (solver instanceof BTSolver)
+		{
+			sb.append(" STOP_REASON=").append(((BTSolver) solver).getStopReason());
+		}
+		if (solver instanceof BTSolver && SudokuSolverMain.hasCountToken(tokens))
+		{
+			sb.append(" ").append(SudokuSolverMain.solutionCount((BTSolver) solver));
+		}
+		sb.append(" SOLUTION=").append(solver.hasSolution() ? SudokuBoardWriter.solution(solver.getSolution()) : "()");
+		return sb.toString();
+	}
+
+	private static void print(PrintStream out, String line)
+	{
+		synchronized (out)
+		{
+			out.println(line);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Solves one puzzle on a worker and writes its line.
+	 */
+	private class PuzzleTask implements Runnable {
+
+		private final String name;
+		private final SudokuFile sf;
+		private final PrintStream out;
+		private final Semaphore waiting;
+
+		PuzzleTask(String name, SudokuFile sf, PrintStream out, Semaphore waiting)
+		{
+			this.name = name;
+			this.sf = sf;
+			this.out = out;
+			this.waiting = waiting;
+		}
+
+		@Override
+		public void run() {
+			try {
+				print(out, solve(name, sf));
+			}catch (RuntimeException e)
+			{
+				print(out, name + " STATUS=error " + e);
+			}finally
+			{
+				waiting.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import sudoku.SudokuCorpus;
+import sudoku.SudokuFile;
+import sudoku.SudokuStreamReader;
+
+/**
+ * Usage: BuildCorpus corpus puzzles...
+ * 
+ * Writes the puzzles of the given files, directories, globs or @listfiles, in 
+ * any format read by SudokuStreamReader, to a binary SudokuCorpus. 
+ */
+public class BuildCorpus {
+
+	public static void main(String[] args) throws IOException
+	{
+		final List<String> paths = new ArrayList<String>();
+		for (int i = 1; i < args.length; i++)
+		{
+			if (BatchSolver.isBatch(args[i]))
+			{
+				paths.addAll(BatchSolver.listPuzzles(args[i]));
+			}
+			else
+			{
+				paths.add(args[i]);
+			}
+		}
+		
+		Iterator<SudokuFile> puzzles = new Iterator<SudokuFile>() {
+			
+			private int file = 0;
+			private SudokuStreamReader reader;
+			
+			@Override
+			public boolean hasNext() {
+				try {
+					while (reader == null || !reader.hasNext())
+					{
+						if (reader != null)
+						{
+							reader.close();
+						}
+						if (file == paths.size())
+						{
+							reader = null;
+							return false;
+						}
+						reader = new SudokuStreamReader(paths.get(file++));
+					}
+					return true;
+				}catch (IOException e)
+				{
+					throw new IllegalStateException(e);
+				}
+			}
+			
+			@Override
+			public SudokuFile next() {
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				return reader.next();
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		
+		int count = SudokuCorpus.write(args[0], puzzles);
+		System.out.println("Wrote " + count + " puzzles to " + args[0]);
+	}
+}
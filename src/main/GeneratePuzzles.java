@@ -0,0 +1,73 @@
+package main;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import sudoku.Odometer;
+import sudoku.SudokuFile;
+import sudoku.UniquePuzzleGenerator;
+
+/**
+ * Usage: GeneratePuzzles output count N p q [SEED=s] [CLUES=c] [THREADS=t]
+ *
+ * Writes <tt>count</tt> puzzles with a unique solution, made by a
+ * UniquePuzzleGenerator, to output (- for the standard output) in the
+ * headered format read by SudokuStreamReader. The same seed, 0 by default,
+ * gives the same puzzles whatever the number of threads. CLUES=c stops
+ * taking clues out at c clues, otherwise the puzzles are minimal.
+ */
+public class GeneratePuzzles {
+
+	public static void main(String[] args) throws IOException
+	{
+		int count = Integer.parseInt(args[1]);
+		int N = Integer.parseInt(args[2]);
+		int p = Integer.parseInt(args[3]);
+		int q = Integer.parseInt(args[4]);
+		long seed = 0;
+		int clues = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 5; i < args.length; i++)
+		{
+			if (args[i].startsWith("SEED=")) seed = Long.parseLong(args[i].substring(5));
+			else if (args[i].startsWith("CLUES=")) clues = Integer.parseInt(args[i].substring(6));
+			else if (args[i].startsWith("THREADS=")) threads = Integer.parseInt(args[i].substring(8));
+		}
+
+		long start = System.currentTimeMillis();
+		PrintStream out = args[0].equals("-") ? System.out : new PrintStream(args[0]);
+		try (UniquePuzzleGenerator generator = new UniquePuzzleGenerator(N, p, q, seed))
+		{
+			generator.setTargetClues(clues);
+			generator.setParallelism(threads);
+			for (int k = 0; k < count; k++)
+			{
+				write(out, generator.generate());
+			}
+		}finally
+		{
+			out.flush();
+			if (out != System.out)
+			{
+				out.close();
+			}
+		}
+		double seconds = (System.currentTimeMillis() - start) / 1000.0;
+		System.err.format("Generated %d puzzles in %.3f s (%.1f puzzles/s)%n", count, seconds, count / seconds);
+	}
+
+	private static void write(PrintStream out, SudokuFile sf)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(sf.getN()).append(" ").append(sf.getP()).append(" ").append(sf.getQ()).append("\n");
+		for (int[] row : sf.getBoard())
+		{
+			for (int j = 0; j < row.length; j++)
+			{
+				sb.append(j == 0 ? "" : " ").append(Odometer.intToOdometer(row[j]));
+			}
+			sb.append("\n");
+		}
+		out.print(sb);
+	}
+}
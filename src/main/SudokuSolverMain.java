@@ -1,7 +1,19 @@
 package main;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import cspSolver.BTSolver;
+import cspSolver.DLXSolver;
+import cspSolver.HiddenPairs;
+import cspSolver.HiddenSingles;
+import cspSolver.NakedPairs;
+import cspSolver.PointingPairs;
+import cspSolver.PortfolioSolver;
+import cspSolver.Solver;
+import cspSolver.XWing;
 import cspSolver.BTSolver.Preprocessing;
 import cspSolver.BTSolver.ConsistencyCheck;
 import cspSolver.BTSolver.ValueSelectionHeuristic;
@@ -11,38 +23,191 @@ import sudoku.SudokuBoardWriter;
 import sudoku.SudokuFile;
 
 public class SudokuSolverMain {
+	
+	/**
+	 * Configurations raced against each other by the PORTFOLIO token
+	 */
+	private static final String[] PORTFOLIO = {
+		"DLX",
+		"ACP MAC MRV DH LCV HS NP HP PP XW",
+		"ACP IFC MRV DH LCV",
+		"ACP MAC MRV DH LCV SEED=1",
+		"ACP MAC MRV DH LCV SEED=2"
+	};
+	
+	/**
+	 * Milliseconds the solver thread is given past its time limit before it is cancelled
+	 */
+	private static final long JOIN_GRACE = 1000;
 
-	public static void main(String[] args)
+	/**
+	 * Usage: SudokuSolverMain puzzle output timelimit [tokens]
+	 * 
+	 * If puzzle is a directory, a glob, @listfile, a binary corpus, or a file 
+	 * that is not a single headered board, such as a Project Euler sudoku.txt 
+	 * or one puzzle per line, every puzzle it names is 
+	 * solved by a BatchSolver, and output is the file the result lines are 
+	 * written to, - for the standard output. WORKERS=n sets the number of 
+	 * puzzles solved at the same time, one per processor by default. 
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException
 	{
+		if (BatchSolver.isBatch(args[0]))
+		{
+			solveBatch(args);
+			return;
+		}
 		long totalStartTime = System.currentTimeMillis();
 		SudokuFile sf = SudokuBoardReader.readFile(args[0]);
-		BTSolver solver = new BTSolver(sf, Integer.parseInt(args[2]));
 		ArrayList<String> tokens = getTokens(args);
-		
-		if (tokens.contains("ACP")) solver.setACPreprocessing(Preprocessing.ACPreprocessing);
-		if (tokens.contains("FC")) solver.setConsistencyChecks(ConsistencyCheck.ForwardChecking);
-		if (tokens.contains("MAC")) solver.setConsistencyChecks(ConsistencyCheck.ArcConsistency);
-		if (tokens.contains("MRV")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MinimumRemainingValue);
-		if (tokens.contains("DH")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.Degree);
-		if (tokens.contains("MRV") && tokens.contains("DH")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MRVDH);
-		if (tokens.contains("LCV")) solver.setValueSelectionHeuristic(ValueSelectionHeuristic.LeastConstrainingValue);
+		int timelimit = Integer.parseInt(args[2]);
+		Solver solver = createSolver(sf, timelimit, tokens);
 		
 		Thread t1 = new Thread(solver);
 		try
 		{
 			t1.start();
-			t1.join();
+			t1.join(timelimit * 1000L + JOIN_GRACE);
 			if(t1.isAlive())
 			{
+				solver.cancel();
 				t1.interrupt();
+				t1.join();
 			}
 		}catch(InterruptedException e)
 		{
 		}
 
+		if (solver instanceof PortfolioSolver)
+		{
+			System.out.println("Portfolio winner: " + ((PortfolioSolver) solver).getWinnerName());
+		}
+		if (solver instanceof BTSolver)
+		{
+			System.out.println("STOP_REASON=" + ((BTSolver) solver).getStopReason());
+		}
+		if (solver instanceof BTSolver && hasCountToken(tokens))
+		{
+			System.out.println(solutionCount((BTSolver) solver));
+		}
 		SudokuBoardWriter.writeFile(solver, args[1], totalStartTime);
 	}
 	
+	private static void solveBatch(String[] args) throws IOException, InterruptedException
+	{
+		ArrayList<String> tokens = getTokens(args);
+		int workers = Runtime.getRuntime().availableProcessors();
+		for (String token : tokens)
+		{
+			if (token.startsWith("WORKERS=")) workers = Integer.parseInt(token.substring(8));
+		}
+		
+		List<String> paths = BatchSolver.listPuzzles(args[0]);
+		BatchSolver batch = new BatchSolver(workers, Integer.parseInt(args[2]), tokens);
+		if (args[1].equals("-"))
+		{
+			batch.solveAll(paths, System.out);
+		}
+		else
+		{
+			try (PrintStream out = new PrintStream(args[1]))
+			{
+				batch.solveAll(paths, out);
+			}
+		}
+	}
+	
+	/**
+	 * @param tokens PORTFOLIO to race the PORTFOLIO configurations, DLX for the 
+	 * Dancing Links solver, otherwise the options of the 
+	 * backtracking solver. SEED=n shuffles its values with seed n, THREADS=n 
+	 * searches with n threads the subtrees below the first SPLIT=d levels (2 by default). 
+	 * COUNT=k counts solutions up to k, 0 for all of them. DEADLINE_MS=n stops the 
+	 * solver n milliseconds after it is created, NODES=n after n assignments. 
+	 * CBJ backjumps to the causes of each failure, NOGOODS=k also learns the 
+	 * failures of at most k decisions. 
+	 */
+	static Solver createSolver(SudokuFile sf, int timelimit, List<String> tokens)
+	{
+		if (tokens.contains("PORTFOLIO"))
+		{
+			PortfolioSolver portfolio = new PortfolioSolver(sf);
+			for (String configuration : PORTFOLIO)
+			{
+				portfolio.add(configuration, createSolver(sf, timelimit, getTokens(configuration)));
+			}
+			return portfolio;
+		}
+		if (tokens.contains("DLX"))
+		{
+			return new DLXSolver(sf, timelimit);
+		}
+		BTSolver solver = new BTSolver(sf, timelimit);
+		if (tokens.contains("ACP")) solver.setACPreprocessing(Preprocessing.ACPreprocessing);
+		if (tokens.contains("FC")) solver.setConsistencyChecks(ConsistencyCheck.ForwardChecking);
+		if (tokens.contains("IFC")) solver.setConsistencyChecks(ConsistencyCheck.IncrementalForwardChecking);
+		if (tokens.contains("MAC")) solver.setConsistencyChecks(ConsistencyCheck.ArcConsistency);
+		if (tokens.contains("MRV")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MinimumRemainingValue);
+		if (tokens.contains("DH")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.Degree);
+		if (tokens.contains("MRV") && tokens.contains("DH")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MRVDH);
+		if (tokens.contains("LCV")) solver.setValueSelectionHeuristic(ValueSelectionHeuristic.LeastConstrainingValue);
+		if (tokens.contains("HS")) solver.addPropagator(new HiddenSingles());
+		if (tokens.contains("NP")) solver.addPropagator(new NakedPairs());
+		if (tokens.contains("HP")) solver.addPropagator(new HiddenPairs());
+		if (tokens.contains("PP")) solver.addPropagator(new PointingPairs());
+		if (tokens.contains("XW")) solver.addPropagator(new XWing());
+		int threads = 1;
+		int splitDepth = 2;
+		if (tokens.contains("CBJ")) solver.setBackjumping(true, 0);
+		for (String token : tokens)
+		{
+			if (token.startsWith("SEED=")) solver.setRandomSeed(Long.parseLong(token.substring(5)));
+			if (token.startsWith("THREADS=")) threads = Integer.parseInt(token.substring(8));
+			if (token.startsWith("SPLIT=")) splitDepth = Integer.parseInt(token.substring(6));
+			if (token.startsWith("COUNT=")) solver.setSolutionLimit(Integer.parseInt(token.substring(6)));
+			if (token.startsWith("DEADLINE_MS=")) solver.setDeadline(System.nanoTime() + Long.parseLong(token.substring(12)) * 1000000L);
+			if (token.startsWith("NODES=")) solver.setNodeLimit(Long.parseLong(token.substring(6)));
+			if (token.startsWith("NOGOODS=")) solver.setBackjumping(true, Integer.parseInt(token.substring(8)));
+		}
+		solver.setParallelSearch(threads, splitDepth);
+		return solver;
+	}
+	
+	static boolean hasCountToken(List<String> tokens)
+	{
+		for (String token : tokens)
+		{
+			if (token.startsWith("COUNT=")) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return COUNT_SOLUTIONS=n, followed by COUNT_COMPLETE and the times in seconds 
+	 * to the first solutions and the last one
+	 */
+	static String solutionCount(BTSolver solver)
+	{
+		int count = solver.getNumSolutions();
+		StringBuilder sb = new StringBuilder("COUNT_SOLUTIONS=").append(count);
+		sb.append(" COUNT_COMPLETE=").append(solver.isCountComplete());
+		sb.append(" SOLUTION_TIMES=(");
+		for (int k = 1; k <= Math.min(count, 10); k++)
+		{
+			sb.append(k == 1 ? "" : ",").append(solver.getSolutionTime(k)/1000.0);
+		}
+		if (count > 10)
+		{
+			sb.append(",...,").append(solver.getSolutionTime(count)/1000.0);
+		}
+		return sb.append(")").toString();
+	}
+	
+	private static ArrayList<String> getTokens(String configuration)
+	{
+		return new ArrayList<String>(Arrays.asList(configuration.split("\\s+")));
+	}
+	
 	private static ArrayList<String> getTokens(String[] args)
 	{
 		ArrayList<String> tokens = new ArrayList<String>();
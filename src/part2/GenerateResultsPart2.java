@@ -3,6 +3,13 @@ package part2;
 import java.util.ArrayList;
 
 import cspSolver.BTSolver;
+import cspSolver.DLXSolver;
+import cspSolver.HiddenPairs;
+import cspSolver.HiddenSingles;
+import cspSolver.NakedPairs;
+import cspSolver.PointingPairs;
+import cspSolver.Solver;
+import cspSolver.XWing;
 import cspSolver.BTSolver.Preprocessing;
 import cspSolver.BTSolver.ConsistencyCheck;
 import cspSolver.BTSolver.ValueSelectionHeuristic;
@@ -12,12 +19,16 @@ import sudoku.SudokuFile;
 
 public class GenerateResultsPart2 {
 
+	/**
+	 * Configurations compared by the report, also the default ones of MacroBenchmark
+	 */
+	static final String[] TOKENS = {"", "FC", "MRV", "DH", "LCV", "ACP", "MAC", "FC MRV DH LCV", "ACP MAC MRV DH LCV"};
+
 	public static void main(String[] args) throws InterruptedException
 	{
 		System.out.println("Average nodes		Average time		Std Dev Time		Tokens");
 		String[] filenames = {"ExampleSudokuFiles/PH1.txt", "ExampleSudokuFiles/PH2.txt", "ExampleSudokuFiles/PH3.txt", "ExampleSudokuFiles/PH4.txt", "ExampleSudokuFiles/PH5.txt"};
-		String[] tokens = {"", "FC", "MRV", "DH", "LCV", "ACP", "MAC", "FC MRV DH LCV", "ACP MAC MRV DH LCV"};
-		for (String token: tokens)
+		for (String token: TOKENS)
 		{
 			double[] times = new double[filenames.length];
 			double[] nodes = new double[filenames.length];
@@ -25,7 +36,7 @@ public class GenerateResultsPart2 {
 			for (int i = 0; i < filenames.length; i++)
 			{
 				SudokuFile sf = SudokuBoardReader.readFile(filenames[i]);
-				BTSolver solver = runsolver(sf, token);
+				Solver solver = runsolver(sf, token);
 				times[i] = solver.getTimeTaken()/1000.0;
 				nodes[i] = solver.getNumAssignments();
 			}
@@ -37,27 +48,61 @@ public class GenerateResultsPart2 {
 		}
 	}
 	
-	public static BTSolver runsolver(SudokuFile sf, String args)
+	public static Solver runsolver(SudokuFile sf, String args)
+	{
+		return runsolver(sf, args, 300);
+	}
+	
+	/**
+	 * @param timelimit time limit of the solver, in seconds
+	 */
+	public static Solver runsolver(SudokuFile sf, String args, int timelimit)
 	{
-		BTSolver solver = new BTSolver(sf, 300);
 		ArrayList<String> tokens = getTokens(args);
-		
-		if (tokens.contains("ACP")) solver.setACPreprocessing(Preprocessing.ACPreprocessing);
-		if (tokens.contains("FC")) solver.setConsistencyChecks(ConsistencyCheck.ForwardChecking);
-		if (tokens.contains("MAC")) solver.setConsistencyChecks(ConsistencyCheck.ArcConsistency);
-		if (tokens.contains("MRV")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MinimumRemainingValue);
-		if (tokens.contains("DH")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.Degree);
-		if (tokens.contains("MRV") && tokens.contains("DH")) solver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MRVDH);
-		if (tokens.contains("LCV")) solver.setValueSelectionHeuristic(ValueSelectionHeuristic.LeastConstrainingValue);
+		Solver solver;
+		if (tokens.contains("DLX"))
+		{
+			solver = new DLXSolver(sf, timelimit);
+		}
+		else
+		{
+			BTSolver btSolver = new BTSolver(sf, timelimit);
+			if (tokens.contains("ACP")) btSolver.setACPreprocessing(Preprocessing.ACPreprocessing);
+			if (tokens.contains("FC")) btSolver.setConsistencyChecks(ConsistencyCheck.ForwardChecking);
+			if (tokens.contains("IFC")) btSolver.setConsistencyChecks(ConsistencyCheck.IncrementalForwardChecking);
+			if (tokens.contains("MAC")) btSolver.setConsistencyChecks(ConsistencyCheck.ArcConsistency);
+			if (tokens.contains("MRV")) btSolver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MinimumRemainingValue);
+			if (tokens.contains("DH")) btSolver.setVariableSelectionHeuristic(VariableSelectionHeuristic.Degree);
+			if (tokens.contains("MRV") && tokens.contains("DH")) btSolver.setVariableSelectionHeuristic(VariableSelectionHeuristic.MRVDH);
+			if (tokens.contains("LCV")) btSolver.setValueSelectionHeuristic(ValueSelectionHeuristic.LeastConstrainingValue);
+			if (tokens.contains("HS")) btSolver.addPropagator(new HiddenSingles());
+			if (tokens.contains("NP")) btSolver.addPropagator(new NakedPairs());
+			if (tokens.contains("HP")) btSolver.addPropagator(new HiddenPairs());
+			if (tokens.contains("PP")) btSolver.addPropagator(new PointingPairs());
+			if (tokens.contains("XW")) btSolver.addPropagator(new XWing());
+			int threads = 1;
+			int splitDepth = 2;
+			for (String token : tokens)
+			{
+				if (token.startsWith("SEED=")) btSolver.setRandomSeed(Long.parseLong(token.substring(5)));
+				if (token.startsWith("THREADS=")) threads = Integer.parseInt(token.substring(8));
+				if (token.startsWith("SPLIT=")) splitDepth = Integer.parseInt(token.substring(6));
+				if (token.startsWith("COUNT=")) btSolver.setSolutionLimit(Integer.parseInt(token.substring(6)));
+			}
+			btSolver.setParallelSearch(threads, splitDepth);
+			solver = btSolver;
+		}
 		
 		Thread t1 = new Thread(solver);
 		try
 		{
 			t1.start();
-			t1.join();
+			t1.join(timelimit * 1000L + 1000);
 			if(t1.isAlive())
 			{
+				solver.cancel();
 				t1.interrupt();
+				t1.join();
 			}
 		}catch(InterruptedException e)
 		{
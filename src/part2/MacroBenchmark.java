@@ -0,0 +1,317 @@
+package part2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cspSolver.Solver;
+import main.BatchSolver;
+import sudoku.SudokuBoardReader;
+import sudoku.SudokuFile;
+
+/**
+ * Repeatable benchmark of whole solves: every puzzle under every configuration
+ * of GenerateResultsPart2, or the ones given.
+ *
+ * <pre>
+ * MacroBenchmark run baseline.csv [FORKS=2] [WARMUP=2] [RUNS=5] [TIMELIMIT=60]
+ *                    [PUZZLES=ExampleSudokuFiles/P*.txt] [CONFIG=tokens]...
+ * MacroBenchmark compare baseline.csv current.csv [ALPHA=0.01]
+ * </pre>
+ *
+ * run starts FORKS new JVMs per configuration. Each one solves every puzzle
+ * WARMUP times to let the JIT compile the solver, then RUNS times measured:
+ * wall time, nodes, backtracks and peak heap, with a garbage collection before
+ * each run. Every measured run is a line of the baseline, a CSV file.
+ *
+ * compare tests each configuration and puzzle of the current file against the
+ * baseline with a one-sided Welch's t-test, on time and on peak heap. A
+ * REGRESSION is a slowdown, or a heap increase, of more than 5% with a p-value
+ * below ALPHA. Node counts do not vary between runs, so any change in them is
+ * reported as well. Exits with status 1 if there is a regression.
+ */
+public class MacroBenchmark {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private static final String HEADER = "config,puzzle,fork,run,status,time_ms,nodes,backtracks,peak_heap_bytes";
+	private static final String RESULT = "RESULT,";
+	private static final double MIN_CHANGE = 0.05;		//smallest relative change reported
+
+	//===============================================================================
+	// Main
+	//===============================================================================
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		if (args.length >= 2 && args[0].equals("run"))
+		{
+			run(args);
+		}
+		else if (args.length >= 3 && args[0].equals("compare"))
+		{
+			double alpha = Double.parseDouble(option(args, "ALPHA=", "0.01"));
+			boolean regressed = compare(read(args[1]), read(args[2]), alpha, System.out);
+			System.exit(regressed ? 1 : 0);
+		}
+		else if (args.length >= 6 && args[0].equals("fork"))
+		{
+			fork(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]), args[5]);
+		}
+		else
+		{
+			System.out.println("Usage: MacroBenchmark run baseline.csv [FORKS=n] [WARMUP=n] [RUNS=n] [TIMELIMIT=s] [PUZZLES=glob] [CONFIG=tokens]...");
+			System.out.println("       MacroBenchmark compare baseline.csv current.csv [ALPHA=p]");
+		}
+	}
+
+	private static String option(String[] args, String key, String defaultValue)
+	{
+		for (String arg : args)
+		{
+			if (arg.startsWith(key))
+			{
+				return arg.substring(key.length());
+			}
+		}
+		return defaultValue;
+	}
+
+	//===============================================================================
+	// Run
+	//===============================================================================
+
+	private static void run(String[] args) throws IOException, InterruptedException
+	{
+		int forks = Integer.parseInt(option(args, "FORKS=", "2"));
+		String warmup = option(args, "WARMUP=", "2");
+		String runs = option(args, "RUNS=", "5");
+		String timelimit = option(args, "TIMELIMIT=", "60");
+		String puzzles = option(args, "PUZZLES=", "ExampleSudokuFiles/P*.txt");
+		List<String> configs = new ArrayList<String>();
+		for (String arg : args)
+		{
+			if (arg.startsWith("CONFIG="))
+			{
+				configs.add(arg.substring(7));
+			}
+		}
+		if (configs.isEmpty())
+		{
+			for (String config : GenerateResultsPart2.TOKENS)
+			{
+				configs.add(config);
+			}
+		}
+
+		//the puzzles are listed once and passed to each fork in a file
+		File list = File.createTempFile("puzzles", ".txt");
+		list.deleteOnExit();
+		Files.write(list.toPath(), BatchSolver.listPuzzles(puzzles), Charset.defaultCharset());
+
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<String> jvmOptions = new ArrayList<String>();
+		for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments())
+		{
+			if (option.startsWith("-X"))
+			{
+				jvmOptions.add(option);
+			}
+		}
+
+		try (PrintStream out = new PrintStream(args[1]))
+		{
+			out.println(HEADER);
+			for (String config : configs)
+			{
+				for (int f = 1; f <= forks; f++)
+				{
+					System.out.println("config \"" + config + "\" fork " + f + "/" + forks);
+					List<String> command = new ArrayList<String>();
+					command.add(java);
+					command.addAll(jvmOptions);
+					command.add("-cp");
+					command.add(System.getProperty("java.class.path"));
+					command.add(MacroBenchmark.class.getName());
+					command.add("fork");
+					command.add(config);
+					command.add(warmup);
+					command.add(runs);
+					command.add(timelimit);
+					command.add(list.getPath());
+
+					Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+					try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream())))
+					{
+						String line;
+						while ((line = in.readLine()) != null)
+						{
+							if (line.startsWith(RESULT))
+							{
+								out.println(config + "," + line.substring(RESULT.length()).replaceFirst(",", "," + f + ","));
+							}
+						}
+					}
+					if (process.waitFor() != 0)
+					{
+						System.out.println("fork exited with status " + process.exitValue());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Body of a forked JVM: solves every puzzle of the list under one
+	 * configuration and prints a RESULT line per measured run.
+	 */
+	private static void fork(String config, int warmup, int runs, int timelimit, String listFile) throws IOException
+	{
+		List<MemoryPoolMXBean> heap = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				heap.add(pool);
+			}
+		}
+
+		for (String puzzle : Files.readAllLines(Paths.get(listFile), Charset.defaultCharset()))
+		{
+			for (int i = 0; i < warmup; i++)
+			{
+				GenerateResultsPart2.runsolver(SudokuBoardReader.readFile(puzzle), config, timelimit);
+			}
+			for (int r = 1; r <= runs; r++)
+			{
+				SudokuFile sf = SudokuBoardReader.readFile(puzzle);
+				System.gc();
+				for (MemoryPoolMXBean pool : heap)
+				{
+					pool.resetPeakUsage();
+				}
+				long start = System.nanoTime();
+				Solver solver = GenerateResultsPart2.runsolver(sf, config, timelimit);
+				long time = System.nanoTime() - start;
+				long peak = 0;
+				for (MemoryPoolMXBean pool : heap)
+				{
+					peak += pool.getPeakUsage().getUsed();
+				}
+				System.out.println(RESULT + puzzle + "," + r + "," + solver.getStatus() + "," + time / 1e6
+						+ "," + solver.getNumAssignments() + "," + solver.getNumBacktracks() + "," + peak);
+			}
+		}
+	}
+
+	//===============================================================================
+	// Compare
+	//===============================================================================
+
+	/**
+	 * Samples of one configuration and puzzle.
+	 */
+	private static class Samples {
+
+		final List<Double> times = new ArrayList<Double>();
+		final List<Double> nodes = new ArrayList<Double>();
+		final List<Double> heap = new ArrayList<Double>();
+	}
+
+	/**
+	 * @return the samples of a baseline file, by configuration and puzzle, in file order
+	 */
+	private static Map<String, Samples> read(String path) throws IOException
+	{
+		Map<String, Samples> results = new LinkedHashMap<String, Samples>();
+		List<String> lines = Files.readAllLines(Paths.get(path), Charset.defaultCharset());
+		for (String line : lines.subList(1, lines.size()))
+		{
+			String[] fields = line.split(",", -1);
+			if (fields.length != 9)
+			{
+				throw new IOException("Malformed line in " + path + ": " + line);
+			}
+			String key = "\"" + fields[0] + "\" " + fields[1];
+			Samples samples = results.get(key);
+			if (samples == null)
+			{
+				samples = new Samples();
+				results.put(key, samples);
+			}
+			samples.times.add(Double.parseDouble(fields[5]));
+			samples.nodes.add(Double.parseDouble(fields[6]));
+			samples.heap.add(Double.parseDouble(fields[8]));
+		}
+		return results;
+	}
+
+	/**
+	 * Prints a line per configuration and puzzle found in both files.
+	 * @return true if there is a regression
+	 */
+	private static boolean compare(Map<String, Samples> baseline, Map<String, Samples> current, double alpha, PrintStream out)
+	{
+		boolean regressed = false;
+		out.format("%-10s %-10s %12s %12s %8s %10s  %s%n", "time", "heap", "base ms", "new ms", "change", "p", "config puzzle");
+		for (Map.Entry<String, Samples> entry : current.entrySet())
+		{
+			Samples before = baseline.get(entry.getKey());
+			if (before == null)
+			{
+				out.println("not in baseline: " + entry.getKey());
+				continue;
+			}
+			Samples after = entry.getValue();
+			Statistics timeBefore = statistics(before.times);
+			Statistics timeAfter = statistics(after.times);
+			String time = verdict(timeBefore, timeAfter, alpha);
+			String heap = verdict(statistics(before.heap), statistics(after.heap), alpha);
+			regressed |= time.equals("REGRESSION") || heap.equals("REGRESSION");
+
+			double change = timeAfter.getMean() / timeBefore.getMean() - 1;
+			out.format("%-10s %-10s %12.3f %12.3f %+7.1f%% %10.2g  %s%s%n", time, heap, timeBefore.getMean(), timeAfter.getMean(),
+					100 * change, Statistics.welchTTest(timeBefore, timeAfter), entry.getKey(),
+					statistics(before.nodes).getMean() != statistics(after.nodes).getMean() ? " NODES CHANGED" : "");
+		}
+		return regressed;
+	}
+
+	private static String verdict(Statistics before, Statistics after, double alpha)
+	{
+		double change = after.getMean() / before.getMean() - 1;
+		if (change > MIN_CHANGE && Statistics.welchTTest(before, after) < alpha)
+		{
+			return "REGRESSION";
+		}
+		if (change < -MIN_CHANGE && Statistics.welchTTest(after, before) < alpha)
+		{
+			return "improved";
+		}
+		return "same";
+	}
+
+	private static Statistics statistics(List<Double> values)
+	{
+		double[] data = new double[values.size()];
+		for (int i = 0; i < data.length; i++)
+		{
+			data[i] = values.get(i);
+		}
+		return new Statistics(data);
+	}
+}
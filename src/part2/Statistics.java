@@ -35,6 +35,94 @@ public class Statistics
         return Math.sqrt(getVariance());
     }
 
+    /**
+     * @return variance of the data as a sample, divided by size - 1
+     */
+    double getSampleVariance()
+    {
+        return size < 2 ? 0 : getVariance() * size / (size - 1);
+    }
+
+    /**
+     * One-sided Welch's t-test.
+     * @return probability of seeing <tt>after</tt>'s mean this far above
+     * <tt>before</tt>'s if both samples came from distributions with the same mean
+     */
+    static double welchTTest(Statistics before, Statistics after)
+    {
+        double va = before.getSampleVariance() / before.size;
+        double vb = after.getSampleVariance() / after.size;
+        double diff = after.getMean() - before.getMean();
+        if (va + vb == 0)
+        {
+            return diff > 0 ? 0 : 1;
+        }
+        double t = diff / Math.sqrt(va + vb);
+        double df = (va + vb) * (va + vb)
+                / (va * va / Math.max(before.size - 1, 1) + vb * vb / Math.max(after.size - 1, 1));
+        double tail = 0.5 * incompleteBeta(df / 2, 0.5, df / (df + t * t));
+        return t > 0 ? tail : 1 - tail;
+    }
+
+    /**
+     * Regularized incomplete beta function I_x(a, b), by its continued fraction.
+     */
+    private static double incompleteBeta(double a, double b, double x)
+    {
+        if (x <= 0 || x >= 1)
+        {
+            return x <= 0 ? 0 : 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * Math.log(x) + b * Math.log(1 - x));
+        if (x > (a + 1) / (a + b + 2))
+        {
+            return 1 - front * betaFraction(b, a, 1 - x) / b;
+        }
+        return front * betaFraction(a, b, x) / a;
+    }
+
+    private static double betaFraction(double a, double b, double x)
+    {
+        double tiny = 1e-300;
+        double c = 1, d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double h = d;
+        for (int m = 1; m <= 300; m++)
+        {
+            for (int step = 0; step < 2; step++)
+            {
+                double num = step == 0
+                        ? m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m))
+                        : -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+                d = 1 + num * d;
+                d = 1 / (Math.abs(d) < tiny ? tiny : d);
+                c = 1 + num / c;
+                c = Math.abs(c) < tiny ? tiny : c;
+                h *= d * c;
+            }
+            if (Math.abs(d * c - 1) < 1e-12)
+            {
+                break;
+            }
+        }
+        return h;
+    }
+
+    private static double logGamma(double x)
+    {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x, tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double c : coefficients)
+        {
+            series += c / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+
     public double median() 
     {
        Arrays.sort(data);
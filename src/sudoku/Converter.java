@@ -1,115 +1,89 @@
 package sudoku;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import cspSolver.Constraint;
 import cspSolver.ConstraintNetwork;
+import cspSolver.Domain;
+import cspSolver.NetworkTopology;
 import cspSolver.Variable;
 
 
 public class Converter {
 
+	//topologies of the boards seen so far, by N, p and q
+	private static final ConcurrentMap<List<Integer>, NetworkTopology> topologies = new ConcurrentHashMap<List<Integer>, NetworkTopology>();
+
+	/**
+	 * Builds a network with a variable per cell, in row-major order, and a 
+	 * constraint per row, column and block, in that order. The constraints 
+	 * come from a topology shared by every board of the same size, so only 
+	 * the variables and their domains are new. 
+	 */
 	public static ConstraintNetwork SudokuFileToConstraintNetwork(SudokuFile sf)
 	{
 		int [][] board = sf.getBoard();
+		int N = sf.getN();
 
-		List<Variable> variables = new ArrayList<Variable>();
-		int value = 0;
-
-		for (int i = 0; i < sf.getN(); i++)
+		int[] values = new int[N];
+		for (int d = 1; d <= N; d++)
 		{
-			for (int j = 0; j < sf.getN(); j++)
-			{
-				value = board[i][j];
-				List<Integer> domain = new ArrayList<Integer>();
-
-				if (value == 0)
-				{
-					for (int d = 1; d <= sf.getN(); d++)
-					{
-						domain.add(d);
-					}
-				}
-				else
-				{
-					domain.add(value);
-				}
-
-				int block = (i/sf.getP() * sf.getP()) + j/sf.getQ();
-
-				variables.add(new Variable(domain, i, j, block));
-			}
+			values[d - 1] = d;
 		}
+		Domain full = new Domain(values);
 
-		Map<Integer, List<Variable>> rows = new HashMap<Integer, List<Variable>>();
-		Map<Integer, List<Variable>> cols = new HashMap<Integer, List<Variable>>();
-		Map<Integer, List<Variable>> blocks = new HashMap<Integer, List<Variable>>();
-
-		for (Variable v : variables)
+		List<Variable> variables = new ArrayList<Variable>(N * N);
+		for (int i = 0; i < N; i++)
 		{
-			int row = v.row();
-			int col = v.col();
-			int block = v.block();
-
-			if (!rows.containsKey(row))
+			for (int j = 0; j < N; j++)
 			{
-				rows.put(row, new ArrayList<Variable>());
-			}
-
-			if (!cols.containsKey(col))
-			{
-				cols.put(col, new ArrayList<Variable>());
-			}
+				int value = board[i][j];
+				Domain domain = value == 0 ? new Domain(full) : new Domain(value);
+				int block = (i/sf.getP() * sf.getP()) + j/sf.getQ();
 
-			if (!blocks.containsKey(block))
-			{
-				blocks.put(block, new ArrayList<Variable>());
+				variables.add(new Variable(domain, i, j, block));
 			}
-			rows.get(row).add(v);
-			cols.get(col).add(v);
-			blocks.get(block).add(v);
-		}
-
-		ConstraintNetwork cn = new ConstraintNetwork();
-
-		for (Variable v : variables)
-		{
-			cn.add(v);
 		}
-
-		for (Entry<Integer, List<Variable>> e : rows.entrySet())
+		return new ConstraintNetwork(topology(N, sf.getP(), sf.getQ()), variables);
+	}
+	
+	/**
+	 * @return the rows, columns and blocks of an N by N board with blocks of p 
+	 * rows and q columns, built once per board size
+	 */
+	public static NetworkTopology topology(int N, int p, int q)
+	{
+		List<Integer> key = Arrays.asList(N, p, q);
+		NetworkTopology topology = topologies.get(key);
+		if (topology == null)
 		{
-			Constraint c = new Constraint();
-			for(Variable v : e.getValue())
+			if (N != p * q)
 			{
-				c.addVariable(v);
+				throw new IllegalArgumentException("Invalid board parameters " + N + " " + p + " " + q);
 			}
-			cn.add(c);
-		}
-
-		for (Entry<Integer, List<Variable>> e : cols.entrySet())
-		{
-			Constraint c = new Constraint();
-			for(Variable v : e.getValue())
+			int[][] units = new int[3 * N][N];
+			int[] blockSizes = new int[N];
+			for (int i = 0; i < N; i++)
 			{
-				c.addVariable(v);
+				for (int j = 0; j < N; j++)
+				{
+					int cell = i * N + j;
+					int block = (i/p * p) + j/q;
+					units[i][j] = cell;
+					units[N + j][i] = cell;
+					units[2 * N + block][blockSizes[block]++] = cell;
+				}
 			}
-			cn.add(c);
-		}
-
-		for (Entry<Integer, List<Variable>> e : blocks.entrySet())
-		{
-			Constraint c = new Constraint();
-			for(Variable v : e.getValue())
+			topology = new NetworkTopology(N * N, units);
+			NetworkTopology other = topologies.putIfAbsent(key, topology);
+			if (other != null)
 			{
-				c.addVariable(v);
+				topology = other;
 			}
-			cn.add(c);
 		}
-		return cn;
+		return topology;
 	}
 	
 	public static SudokuFile ConstraintNetworkToSudokuFile(ConstraintNetwork cn, int n, int p, int q)
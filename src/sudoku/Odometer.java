@@ -4,7 +4,7 @@ import java.util.Arrays;
 
 public class Odometer {
 	public static int odometerToInt(String value) {
-		int retVal = Arrays.binarySearch(ODOMETER, value.toUpperCase());
+		int retVal = value.length() == 1 ? charToInt(value.charAt(0)) : -1;
 		if(retVal < 0)
 		{
 			System.err.println("odometerToInt failed. Invlaid value " + value + "Replaced with 0");
@@ -13,6 +13,16 @@ public class Odometer {
 		return retVal;
 	}
 	
+	/**
+	 * Looks a symbol up in a table, upper or lower case. 
+	 * @param c a character or byte of the input
+	 * @return value of the symbol, -1 if <tt>c</tt> is not a symbol
+	 */
+	public static int charToInt(int c)
+	{
+		return c >= 0 && c < VALUES.length ? VALUES[c] : -1;
+	}
+	
 	public static String intToOdometer(int num)
 	{
 		String retVal;
@@ -30,4 +40,16 @@ public class Odometer {
 		 "A","B","C","D","E","F","G","H","I","J",
 		 "K","L","M","N","O","P","Q","R","S","T",
 		 "U","V","W","X","Y","Z"};
+	
+	private static final byte[] VALUES = new byte[128];	//value of each symbol, -1 for other characters
+	static
+	{
+		Arrays.fill(VALUES, (byte) -1);
+		for (int i = 0; i < ODOMETER.length; i++)
+		{
+			char c = ODOMETER[i].charAt(0);
+			VALUES[c] = (byte) i;
+			VALUES[Character.toLowerCase(c)] = (byte) i;
+		}
+	}
 }
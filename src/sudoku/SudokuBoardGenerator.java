@@ -4,6 +4,11 @@ import java.util.Random;
 
 public class SudokuBoardGenerator {
 
+	/**
+	 * Searches started by randomGrid before it falls back to shuffledGrid
+	 */
+	private static final int SAMPLER_ATTEMPTS = 10;
+
 	public static SudokuFile generateBoard(int N, int p, int q, int numAssignments)
 	{	
 		return generateBoard(N, p, q, numAssignments, 5000);
@@ -48,6 +53,130 @@ public class SudokuBoardGenerator {
 		sf.setBoard(tempBoard);
 		return sf;
 	}
+	
+	/**
+	 * Creates a board whose numAssignments clues are random cells of a random 
+	 * complete grid, so it always has a solution, whatever the fill ratio. 
+	 * @throws IllegalArgumentException if N is above 64
+	 */
+	public static SudokuFile generateSolvableBoard(int N, int p, int q, int numAssignments)
+	{
+		return generateSolvableBoard(N, p, q, numAssignments, new Random());
+	}
+	
+	/**
+	 * @param random source of the grid and of the cells revealed, for boards 
+	 * that can be generated again from a seed
+	 */
+	public static SudokuFile generateSolvableBoard(int N, int p, int q, int numAssignments, Random random)
+	{
+		SudokuFile sf = new SudokuFile(N, p, q);
+		if(numAssignments > sf.getN()*sf.getN())
+		{
+			System.out.println("Number of assignments exceeds available spaces in board. Returning SudokuFile with an empty board");
+			return sf;
+		}
+		N = sf.getN();
+		int[][] grid = randomGrid(N, sf.getP(), sf.getQ(), random);
+		int[][] board = new int[N][N];
+		int[] cells = new int[N * N];
+		for (int c = 0; c < cells.length; c++)
+		{
+			cells[c] = c;
+		}
+		for (int k = 0; k < numAssignments; k++)
+		{
+			int pick = k + random.nextInt(cells.length - k);
+			int cell = cells[pick];
+			cells[pick] = cells[k];
+			cells[k] = cell;
+			board[cell / N][cell % N] = grid[cell / N][cell % N];
+		}
+		sf.setBoard(board);
+		return sf;
+	}
+	
+	/**
+	 * Fills an empty board by backtracking with the values of each cell tried 
+	 * in a random order. The candidates of each row, column and box are kept as 
+	 * bitmasks, and the cell with the fewest candidates is filled first. 
+	 * A search that backtracks too much is started over, up to SAMPLER_ATTEMPTS 
+	 * times. Large boards rarely fill that way, so the grid then comes from 
+	 * shuffledGrid instead. 
+	 * @return a complete grid, row by row
+	 * @throws IllegalArgumentException if N is above 64, the size of the bitmasks
+	 */
+	public static int[][] randomGrid(int N, int p, int q, Random random)
+	{
+		if (N > 64)
+		{
+			throw new IllegalArgumentException("Boards of more than 64 values are not supported: " + N);
+		}
+		for (int attempt = 0; attempt < SAMPLER_ATTEMPTS; attempt++)
+		{
+			GridSampler sampler = new GridSampler(N, p, q, random);
+			if (sampler.fill(N * N))
+			{
+				return sampler.grid;
+			}
+		}
+		return shuffledGrid(N, p, q, random);
+	}
+	
+	/**
+	 * Builds a complete grid from a fixed pattern, then shuffles it without 
+	 * breaking any constraint: rows within their band of p rows, bands, 
+	 * columns within their stack of q columns, stacks, and values. 
+	 * @return a complete grid, row by row
+	 */
+	public static int[][] shuffledGrid(int N, int p, int q, Random random)
+	{
+		int[] rowOrder = blockPermutation(N, p, random);
+		int[] colOrder = blockPermutation(N, q, random);
+		int[] symbols = permutation(N, random);
+		int[][] grid = new int[N][N];
+		for (int i = 0; i < N; i++)
+		{
+			int r = rowOrder[i];
+			for (int j = 0; j < N; j++)
+			{
+				grid[i][j] = symbols[(q * (r % p) + r / p + colOrder[j]) % N] + 1;
+			}
+		}
+		return grid;
+	}
+	
+	/**
+	 * @return a random order of 0 to N-1 that keeps each group of <tt>size</tt> 
+	 * consecutive indices together, the groups and the indices in each of them 
+	 * being shuffled
+	 */
+	private static int[] blockPermutation(int N, int size, Random random)
+	{
+		int[] groups = permutation(N / size, random);
+		int[] order = new int[N];
+		for (int g = 0; g < groups.length; g++)
+		{
+			int[] within = permutation(size, random);
+			for (int k = 0; k < size; k++)
+			{
+				order[g * size + k] = groups[g] * size + within[k];
+			}
+		}
+		return order;
+	}
+	
+	private static int[] permutation(int n, Random random)
+	{
+		int[] order = new int[n];
+		for (int k = 0; k < n; k++)
+		{
+			int pick = random.nextInt(k + 1);
+			order[k] = order[pick];
+			order[pick] = k;
+		}
+		return order;
+	}
 
 
 	private static boolean checkConstraints(int row, int col, int value, SudokuFile sf, int[][] board)
@@ -62,6 +191,10 @@ public class SudokuBoardGenerator {
 		return false; 
 	}
 
+	//===============================================================================
+	// Checks
+	//===============================================================================
+
 	public static boolean checkRow(int row, int value, int N, int[][] board)
 	{
 		for(int i = 0; i < N; i++)
@@ -108,4 +241,111 @@ public class SudokuBoardGenerator {
 		}
 		return true;
 	}
+	
+	//===============================================================================
+	// Grid Sampler
+	//===============================================================================
+	
+	/**
+	 * State of one randomGrid search. Bit v-1 of a mask is set when value v 
+	 * is used in that row, column or box. 
+	 */
+	private static class GridSampler {
+		
+		private final int N, p, q;
+		private final Random random;
+		private final int[][] grid;
+		private final long[] rows, cols, boxes;
+		private final long full;
+		private final int[][] values;		//scratch space for the candidates of each depth
+		private int budget;				//dead ends left before starting over
+		
+		GridSampler(int N, int p, int q, Random random)
+		{
+			this.N = N;
+			this.p = p;
+			this.q = q;
+			this.random = random;
+			this.grid = new int[N][N];
+			this.rows = new long[N];
+			this.cols = new long[N];
+			this.boxes = new long[N];
+			this.full = N == 64 ? -1L : (1L << N) - 1;
+			this.values = new int[N * N][N];
+			this.budget = 10 * N * N;
+		}
+		
+		/**
+		 * @param empty number of cells left to fill
+		 * @return true once the grid is complete, false on a dead end
+		 */
+		boolean fill(int empty)
+		{
+			if (empty == 0)
+			{
+				return true;
+			}
+			int row = -1, col = -1, fewest = N + 1;
+			long candidates = 0;
+			for (int i = 0; i < N && fewest > 1; i++)
+			{
+				for (int j = 0; j < N; j++)
+				{
+					if (grid[i][j] != 0)
+					{
+						continue;
+					}
+					long free = full & ~(rows[i] | cols[j] | boxes[i / p * p + j / q]);
+					int count = Long.bitCount(free);
+					if (count < fewest)
+					{
+						row = i;
+						col = j;
+						fewest = count;
+						candidates = free;
+						if (count <= 1)
+						{
+							break;
+						}
+					}
+				}
+			}
+			if (fewest == 0)
+			{
+				budget--;
+				return false;
+			}
+			
+			int[] order = values[empty - 1];
+			for (int k = 0; k < fewest; k++)
+			{
+				int pick = random.nextInt(k + 1);
+				order[k] = order[pick];
+				order[pick] = Long.numberOfTrailingZeros(candidates) + 1;
+				candidates &= candidates - 1;
+			}
+			int box = row / p * p + col / q;
+			for (int k = 0; k < fewest; k++)
+			{
+				long bit = 1L << (order[k] - 1);
+				grid[row][col] = order[k];
+				rows[row] |= bit;
+				cols[col] |= bit;
+				boxes[box] |= bit;
+				if (fill(empty - 1))
+				{
+					return true;
+				}
+				grid[row][col] = 0;
+				rows[row] &= ~bit;
+				cols[col] &= ~bit;
+				boxes[box] &= ~bit;
+				if (budget < 0)
+				{
+					return false;
+				}
+			}
+			return false;
+		}
+	}
 }
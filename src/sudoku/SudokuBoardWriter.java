@@ -1,5 +1,5 @@
 package sudoku;
-import cspSolver.BTSolver;
+import cspSolver.Solver;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -8,7 +8,7 @@ import java.io.File;
 
 public class SudokuBoardWriter {
 
-	public static void writeFile(BTSolver solver, String filePath, long totalStartTime)
+	public static void writeFile(Solver solver, String filePath, long totalStartTime)
 	{
 		try {
 			File file = new File(filePath);
@@ -37,7 +37,10 @@ public class SudokuBoardWriter {
 		}
 	}
 	
-	private static String solution(SudokuFile sudoku) {
+	/**
+	 * @return the board of a solution as (v,v,...), row by row
+	 */
+	public static String solution(SudokuFile sudoku) {
 		StringBuilder sb = new StringBuilder();
 		
 		sb.append("(");
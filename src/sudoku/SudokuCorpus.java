@@ -0,0 +1,282 @@
+package sudoku;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A collection of puzzles stored in a compact binary file, read through a
+ * memory mapping. Any puzzle can be looked at by its ordinal without parsing
+ * or copying the others, so threads can share a corpus and split it by ordinal
+ * ranges.
+ *
+ * File layout, big endian:
+ * <pre>
+ * "SDKC" version:int
+ * a record per puzzle: N:byte p:byte q:byte bitsPerCell:byte cells
+ * index: offset:long of each record
+ * count:long indexOffset:long "SDKC"
+ * </pre>
+ * The cells are stored row by row, bitsPerCell bits each, packed from the lowest
+ * bit of each byte up. bitsPerCell is the fewest bits holding N: 4 for 9x9,
+ * 5 for 16x16 and 25x25, 6 for 35x35.
+ *
+ * Corpora must be smaller than 2 GB, the limit of a single mapping.
+ */
+public class SudokuCorpus implements Closeable {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private static final int MAGIC = ('S' << 24) | ('D' << 16) | ('K' << 8) | 'C';
+	private static final int VERSION = 1;
+	private static final int TRAILER = 20;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private final int indexOffset;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Maps a corpus file.
+	 * @throws IOException if the file cannot be read or is not a corpus
+	 */
+	public SudokuCorpus(String filePath) throws IOException
+	{
+		this.file = new RandomAccessFile(filePath, "r");
+		try
+		{
+			long length = file.length();
+			if (length > Integer.MAX_VALUE)
+			{
+				throw new IOException("Corpus larger than 2 GB: " + filePath);
+			}
+			this.buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			if (length < 8 + TRAILER || buffer.getInt(0) != MAGIC || buffer.getInt((int) length - 4) != MAGIC)
+			{
+				throw new IOException("Not a sudoku corpus: " + filePath);
+			}
+			if (buffer.getInt(4) != VERSION)
+			{
+				throw new IOException("Unsupported corpus version " + buffer.getInt(4) + ": " + filePath);
+			}
+			this.size = (int) buffer.getLong((int) length - TRAILER);
+			this.indexOffset = (int) buffer.getLong((int) length - TRAILER + 8);
+		}
+		catch (IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of puzzles in the corpus
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param ordinal position of the puzzle, from 0
+	 * @return a view reading the puzzle straight from the mapped file
+	 */
+	public View get(int ordinal)
+	{
+		if (ordinal < 0 || ordinal >= size)
+		{
+			throw new IndexOutOfBoundsException("Puzzle " + ordinal + " of " + size);
+		}
+		return new View((int) buffer.getLong(indexOffset + 8 * ordinal));
+	}
+
+	/**
+	 * @return true if the file starts like a corpus
+	 */
+	public static boolean isCorpus(String filePath)
+	{
+		try (RandomAccessFile f = new RandomAccessFile(filePath, "r"))
+		{
+			return f.length() >= 8 + TRAILER && f.readInt() == MAGIC;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	//===============================================================================
+	// Writing
+	//===============================================================================
+
+	/**
+	 * Writes puzzles to a new corpus file, in the order given.
+	 * @return number of puzzles written
+	 */
+	public static int write(String filePath, Iterator<SudokuFile> puzzles) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16)))
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			long[] offsets = new long[64];
+			int count = 0;
+			byte[] cells = new byte[0];
+			while (puzzles.hasNext())
+			{
+				SudokuFile sf = puzzles.next();
+				int N = sf.getN();
+				if (N > 255)
+				{
+					throw new IOException("Board too large for a corpus: " + N);
+				}
+				if (count == offsets.length)
+				{
+					offsets = Arrays.copyOf(offsets, count * 2);
+				}
+				offsets[count++] = out.size();
+
+				int bits = bitsPerCell(N);
+				int length = (N * N * bits + 7) / 8;
+				if (cells.length < length)
+				{
+					cells = new byte[length];
+				}
+				Arrays.fill(cells, 0, length, (byte) 0);
+				int[][] board = sf.getBoard();
+				for (int c = 0; c < N * N; c++)
+				{
+					int bit = c * bits;
+					int value = board[c / N][c % N] << (bit & 7);
+					cells[bit >>> 3] |= value;
+					if ((bit & 7) + bits > 8)
+					{
+						cells[(bit >>> 3) + 1] |= value >>> 8;
+					}
+				}
+
+				out.writeByte(N);
+				out.writeByte(sf.getP());
+				out.writeByte(sf.getQ());
+				out.writeByte(bits);
+				out.write(cells, 0, length);
+			}
+
+			long indexOffset = out.size();
+			for (int i = 0; i < count; i++)
+			{
+				out.writeLong(offsets[i]);
+			}
+			out.writeLong(count);
+			out.writeLong(indexOffset);
+			out.writeInt(MAGIC);
+			if (out.size() == Integer.MAX_VALUE)
+			{
+				throw new IOException("Corpus larger than 2 GB: " + filePath);
+			}
+			return count;
+		}
+	}
+
+	private static int bitsPerCell(int N)
+	{
+		return 32 - Integer.numberOfLeadingZeros(N);
+	}
+
+	//===============================================================================
+	// View
+	//===============================================================================
+
+	/**
+	 * A puzzle of the corpus. Cells are decoded from the mapping on each read,
+	 * nothing is copied until toSudokuFile is called. Views can be read from
+	 * several threads at once.
+	 */
+	public class View {
+
+		private final int offset;
+		private final int N;
+		private final int bits;
+		private final int mask;
+
+		private View(int offset)
+		{
+			this.offset = offset;
+			this.N = buffer.get(offset) & 0xFF;
+			this.bits = buffer.get(offset + 3);
+			this.mask = (1 << bits) - 1;
+		}
+
+		public int getN()
+		{
+			return N;
+		}
+
+		public int getP()
+		{
+			return buffer.get(offset + 1) & 0xFF;
+		}
+
+		public int getQ()
+		{
+			return buffer.get(offset + 2) & 0xFF;
+		}
+
+		/**
+		 * @return value of the cell, 0 if it is empty
+		 */
+		public int getCell(int row, int col)
+		{
+			int bit = (row * N + col) * bits;
+			int at = offset + 4 + (bit >>> 3);
+			int word = buffer.get(at) & 0xFF;
+			if ((bit & 7) + bits > 8)
+			{
+				word |= (buffer.get(at + 1) & 0xFF) << 8;
+			}
+			return (word >>> (bit & 7)) & mask;
+		}
+
+		/**
+		 * @return a copy of the puzzle
+		 */
+		public SudokuFile toSudokuFile()
+		{
+			int[][] board = new int[N][N];
+			for (int i = 0; i < N; i++)
+			{
+				for (int j = 0; j < N; j++)
+				{
+					board[i][j] = getCell(i, j);
+				}
+			}
+			return new SudokuFile(N, getP(), getQ(), board);
+		}
+	}
+}
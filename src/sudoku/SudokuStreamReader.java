@@ -0,0 +1,367 @@
+package sudoku;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the puzzles of a multi-puzzle file one at a time, without loading the
+ * file. The bytes are parsed by hand, symbols are looked up with
+ * Odometer.charToInt. Each puzzle may be in one of these formats, told apart
+ * by its first line:
+ *
+ * <ul>
+ * <li>headered: an "N p q" line followed by N lines of N symbols separated by
+ * whitespace, as read by SudokuBoardReader</li>
+ * <li>Project Euler (p096 sudoku.txt): a line starting with "Grid" followed by
+ * 9 lines of 9 digits</li>
+ * <li>one line: the N*N symbols of the board row by row, 0 or . for an empty
+ * cell, up to the first whitespace. The blocks are p rows by q columns, where
+ * p is the largest divisor of N not above its square root</li>
+ * </ul>
+ *
+ * Blank lines and lines starting with # are skipped between puzzles.
+ */
+public class SudokuStreamReader implements Iterator<SudokuFile>, Closeable {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[1 << 16];
+	private int position;
+	private int limit;
+
+	private byte[] line = new byte[128];		//current line, without its end of line
+	private int lineLength;
+	private int lineNumber;
+
+	private SudokuFile next;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	public SudokuStreamReader(InputStream in)
+	{
+		this.in = in;
+	}
+
+	public SudokuStreamReader(String filePath) throws IOException
+	{
+		this(new FileInputStream(filePath));
+	}
+
+	//===============================================================================
+	// Reading
+	//===============================================================================
+
+	/**
+	 * @return the next puzzle, null at the end of the input
+	 * @throws IOException if the input cannot be read or a puzzle is malformed
+	 */
+	public SudokuFile read() throws IOException
+	{
+		if (next != null)
+		{
+			SudokuFile sf = next;
+			next = null;
+			return sf;
+		}
+		do
+		{
+			if (!readLine())
+			{
+				return null;
+			}
+		} while (isBlankOrComment());
+
+		if (startsWith("Grid"))
+		{
+			return readEuler();
+		}
+		if (countTokens() == 3)
+		{
+			return readHeadered();
+		}
+		return readOneLine();
+	}
+
+	/**
+	 * @throws IllegalStateException wrapping the IOException if a puzzle cannot be read
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null)
+		{
+			try {
+				next = read();
+			}catch (IOException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public SudokuFile next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		SudokuFile sf = next;
+		next = null;
+		return sf;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	//===============================================================================
+	// Formats
+	//===============================================================================
+
+	private SudokuFile readEuler() throws IOException
+	{
+		int[][] board = new int[9][9];
+		for (int i = 0; i < 9; i++)
+		{
+			if (!readLine())
+			{
+				throw malformed("incomplete grid");
+			}
+			int col = 0;
+			for (int k = 0; k < lineLength; k++)
+			{
+				if (!isWhitespace(line[k]))
+				{
+					if (col == 9)
+					{
+						throw malformed("more than 9 digits");
+					}
+					board[i][col++] = symbol(line[k], 9);
+				}
+			}
+			if (col != 9)
+			{
+				throw malformed("expected 9 digits");
+			}
+		}
+		return new SudokuFile(9, 3, 3, board);
+	}
+
+	private SudokuFile readHeadered() throws IOException
+	{
+		int[] params = new int[3];
+		int k = 0;
+		for (int t = 0; t < 3; t++)
+		{
+			while (isWhitespace(line[k]))
+			{
+				k++;
+			}
+			int value = 0;
+			for (; k < lineLength && !isWhitespace(line[k]); k++)
+			{
+				if (line[k] < '0' || line[k] > '9')
+				{
+					throw malformed("invalid header");
+				}
+				value = value * 10 + line[k] - '0';
+			}
+			params[t] = value;
+		}
+		int N = params[0];
+		if (N < 1 || N != params[1] * params[2])
+		{
+			throw malformed("invalid parameters " + N + " " + params[1] + " " + params[2]);
+		}
+
+		int[][] board = new int[N][N];
+		for (int i = 0; i < N; i++)
+		{
+			if (!readLine())
+			{
+				throw malformed("incomplete board");
+			}
+			int col = 0;
+			for (k = 0; k < lineLength; k++)
+			{
+				if (isWhitespace(line[k]))
+				{
+					continue;
+				}
+				if (col == N || (k + 1 < lineLength && !isWhitespace(line[k + 1])))
+				{
+					throw malformed("expected " + N + " single symbols");
+				}
+				board[i][col++] = symbol(line[k], N);
+			}
+			if (col != N)
+			{
+				throw malformed("expected " + N + " symbols");
+			}
+		}
+		return new SudokuFile(N, params[1], params[2], board);
+	}
+
+	private SudokuFile readOneLine() throws IOException
+	{
+		int start = 0;
+		while (isWhitespace(line[start]))
+		{
+			start++;
+		}
+		int end = start;
+		while (end < lineLength && !isWhitespace(line[end]))
+		{
+			end++;
+		}
+		int cells = end - start;
+		int N = (int) Math.round(Math.sqrt(cells));
+		if (N * N != cells)
+		{
+			throw malformed(cells + " cells is not a square board");
+		}
+		int p = (int) Math.sqrt(N);
+		while (N % p != 0)
+		{
+			p--;
+		}
+
+		int[][] board = new int[N][N];
+		for (int c = 0; c < cells; c++)
+		{
+			byte b = line[start + c];
+			board[c / N][c % N] = b == '.' ? 0 : symbol(b, N);
+		}
+		return new SudokuFile(N, p, N / p, board);
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Reads the next line into <tt>line</tt>.
+	 * @return false at the end of the input
+	 */
+	private boolean readLine() throws IOException
+	{
+		lineLength = 0;
+		while (true)
+		{
+			if (position == limit)
+			{
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0)
+				{
+					limit = 0;
+					if (lineLength == 0)
+					{
+						return false;
+					}
+					break;
+				}
+			}
+			byte b = buffer[position++];
+			if (b == '\n')
+			{
+				break;
+			}
+			if (lineLength == line.length)
+			{
+				line = Arrays.copyOf(line, lineLength * 2);
+			}
+			line[lineLength++] = b;
+		}
+		if (lineLength > 0 && line[lineLength - 1] == '\r')
+		{
+			lineLength--;
+		}
+		lineNumber++;
+		return true;
+	}
+
+	private boolean isBlankOrComment()
+	{
+		for (int k = 0; k < lineLength; k++)
+		{
+			if (!isWhitespace(line[k]))
+			{
+				return line[k] == '#';
+			}
+		}
+		return true;
+	}
+
+	private boolean startsWith(String prefix)
+	{
+		if (lineLength < prefix.length())
+		{
+			return false;
+		}
+		for (int k = 0; k < prefix.length(); k++)
+		{
+			if (Character.toLowerCase(line[k]) != Character.toLowerCase(prefix.charAt(k)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int countTokens()
+	{
+		int count = 0;
+		boolean inToken = false;
+		for (int k = 0; k < lineLength; k++)
+		{
+			boolean white = isWhitespace(line[k]);
+			if (!white && !inToken)
+			{
+				count++;
+			}
+			inToken = !white;
+		}
+		return count;
+	}
+
+	private int symbol(byte b, int N) throws IOException
+	{
+		int value = Odometer.charToInt(b);
+		if (value < 0 || value > N)
+		{
+			throw malformed("invalid symbol '" + (char) b + "'");
+		}
+		return value;
+	}
+
+	private static boolean isWhitespace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+	}
+
+	private IOException malformed(String reason)
+	{
+		return new IOException("Malformed puzzle at line " + lineNumber + ": " + reason);
+	}
+}
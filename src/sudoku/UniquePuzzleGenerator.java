@@ -0,0 +1,207 @@
+package sudoku;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cspSolver.DLXSolver;
+
+/**
+ * Generates puzzles with exactly one solution. Each puzzle starts as a random
+ * complete grid, then its clues are taken out one at a time in a random order,
+ * keeping every clue whose removal would allow a second solution. Without a
+ * target the result is minimal: no clue can be taken out.
+ *
+ * The uniqueness of the candidate removals is checked by DLXSolver, several
+ * candidates at a time on a thread pool. A clue that cannot be taken out can
+ * never be taken out later, once more clues are gone, so the puzzle only
+ * depends on the seed, not on the number of threads.
+ */
+public class UniquePuzzleGenerator implements Closeable {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private static final int CHECK_TIMELIMIT = 60;		//seconds allowed to a uniqueness check
+
+	private final int N, p, q;
+	private final Random random;
+	private int targetClues;
+	private int parallelism = 1;
+	private ExecutorService pool;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param seed seed of the grids and of the order clues are taken out in
+	 */
+	public UniquePuzzleGenerator(int N, int p, int q, long seed)
+	{
+		if (N < 1 || N != p * q)
+		{
+			throw new IllegalArgumentException("Invalid board parameters " + N + " " + p + " " + q);
+		}
+		this.N = N;
+		this.p = p;
+		this.q = q;
+		this.random = new Random(seed);
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Stops taking clues out once the puzzle has <tt>clues</tt> of them. The
+	 * puzzle may end up with more if it becomes minimal first.
+	 * @param clues number of clues to stop at, 0 for a minimal puzzle
+	 */
+	public void setTargetClues(int clues)
+	{
+		this.targetClues = clues;
+	}
+
+	/**
+	 * @param parallelism number of candidate removals checked at the same time
+	 */
+	public void setParallelism(int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+
+	//===============================================================================
+	// Generator
+	//===============================================================================
+
+	/**
+	 * @return the next puzzle of the seed's sequence
+	 */
+	public SudokuFile generate()
+	{
+		int[][] board = SudokuBoardGenerator.randomGrid(N, p, q, random);
+		int[] order = new int[N * N];
+		for (int c = 0; c < order.length; c++)
+		{
+			int k = random.nextInt(c + 1);
+			order[c] = order[k];
+			order[k] = c;
+		}
+
+		int clues = N * N;
+		int next = 0;
+		while (next < order.length && clues > targetClues)
+		{
+			int batch = Math.min(parallelism, order.length - next);
+			int removed = firstRemovable(board, order, next, batch);
+			if (removed < 0)
+			{
+				next += batch;
+			}
+			else
+			{
+				board[order[removed] / N][order[removed] % N] = 0;
+				clues--;
+				next = removed + 1;
+			}
+		}
+		return new SudokuFile(N, p, q, board);
+	}
+
+	/**
+	 * @return true if the puzzle has exactly one solution
+	 */
+	public static boolean isUnique(SudokuFile sf)
+	{
+		DLXSolver solver = new DLXSolver(sf, CHECK_TIMELIMIT);
+		solver.setSolutionLimit(2);
+		solver.solve();
+		return solver.isUnique();
+	}
+
+	/**
+	 * Stops the threads checking candidate removals.
+	 */
+	@Override
+	public void close()
+	{
+		if (pool != null)
+		{
+			pool.shutdown();
+		}
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Checks the cells order[from] to order[from + count - 1] at the same time.
+	 * @return position in <tt>order</tt> of the first cell that can be emptied
+	 * with the puzzle still unique, -1 if there is none
+	 */
+	private int firstRemovable(final int[][] board, final int[] order, int from, int count)
+	{
+		if (count == 1)
+		{
+			return isUnique(without(board, order[from])) ? from : -1;
+		}
+		if (pool == null)
+		{
+			pool = Executors.newFixedThreadPool(parallelism);
+		}
+		List<Callable<Boolean>> checks = new ArrayList<Callable<Boolean>>(count);
+		for (int k = from; k < from + count; k++)
+		{
+			final SudokuFile candidate = without(board, order[k]);
+			checks.add(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() {
+					return isUnique(candidate);
+				}
+			});
+		}
+		try
+		{
+			List<Future<Boolean>> results = pool.invokeAll(checks);
+			for (int k = 0; k < count; k++)
+			{
+				if (results.get(k).get())
+				{
+					return from + k;
+				}
+			}
+			return -1;
+		}catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while checking removals", e);
+		}catch (ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return a copy of the puzzle with cell emptied
+	 */
+	private SudokuFile without(int[][] board, int cell)
+	{
+		int[][] copy = new int[N][];
+		for (int i = 0; i < N; i++)
+		{
+			copy[i] = board[i].clone();
+		}
+		copy[cell / N][cell % N] = 0;
+		return new SudokuFile(N, p, q, copy);
+	}
+}